@@ -0,0 +1,177 @@
+package io.gaultier.modeling.model.data;
+
+import java.nio.ByteBuffer;
+
+import io.gaultier.modeling.util.base.ByteArray;
+import io.gaultier.modeling.util.base.ByteBufferStream;
+import io.gaultier.modeling.util.base.ByteBufferStreamPool;
+import io.gaultier.modeling.util.base.FileUtils;
+import io.gaultier.modeling.util.base.SizeHint;
+
+/**
+ * Compact binary encoding of a data class, generated with -binaryCodecs.
+ * A data is written as a bit set of its non null fields, one bit per field in index order, followed by the values:
+ * zigzag varints for integers, longs, ids, versions and date times (epoch millis), fixed 64 bits for doubles,
+ * a byte for booleans, a varint ordinal for enums, varint length and bytes for strings (UTF-8) and binaries,
+ * the encoding of the data for objects, and a varint size followed by the elements for lists.
+ * Lists must not contain nulls, and objects must not be referenced twice in a graph.
+ * Values of various classes are tagged with the varint type id of their class, see {@link #writeTyped}.
+ */
+public abstract class BinaryCodec<T extends ModelData<T>> {
+
+    public abstract DataDefinition<T> getDefinition();
+
+    public abstract void write(ByteBufferStream out, T data);
+
+    public abstract T read(ByteBuffer in);
+
+    public byte[] toBytes(T data) {
+        SizeHint hint = getDefinition().getSerializedSizeHint();
+        ByteBufferStreamPool pool = ByteBufferStreamPool.get();
+        ByteBufferStream b = pool.acquire(hint);
+        try {
+            write(b, data);
+            return b.toByteArray();
+        }
+        finally {
+            pool.release(b, hint);
+        }
+    }
+
+    public T fromBytes(byte[] bytes) {
+        return read(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Write the type id of the class of the data, then the data with the codec of its class.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public static void writeTyped(ByteBufferStream out, ModelData<?> data, DataDefinitionRegistry registry) {
+        DataDefinition<?> d = registry.get(data.getClass());
+        if (d == null || d.getTypeId() < 0 || d.getBinaryCodec() == null) {
+            throw new IllegalArgumentException("No type id or codec for " + data.getClass().getName());
+        }
+        writeUnsignedVarLong(out, d.getTypeId());
+        ((BinaryCodec) d.getBinaryCodec()).write(out, data);
+    }
+
+    /**
+     * Read a data written by {@link #writeTyped}.
+     */
+    public static ModelData<?> readTyped(ByteBuffer in, DataDefinitionRegistry registry) {
+        long id = readUnsignedVarLong(in);
+        DataDefinition<?> d = id > Integer.MAX_VALUE ? null : registry.getByTypeId((int) id);
+        if (d == null || d.getBinaryCodec() == null) {
+            throw new IllegalArgumentException("No codec for type id " + id);
+        }
+        return d.getBinaryCodec().read(in);
+    }
+
+    public static void writeVarInt(ByteBufferStream out, int v) {
+        writeUnsignedVarLong(out, ((v << 1) ^ (v >> 31)) & 0xFFFFFFFFL);
+    }
+
+    public static int readVarInt(ByteBuffer in) {
+        int v = (int) readUnsignedVarLong(in);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    public static void writeVarLong(ByteBufferStream out, long v) {
+        writeUnsignedVarLong(out, (v << 1) ^ (v >> 63));
+    }
+
+    public static long readVarLong(ByteBuffer in) {
+        long v = readUnsignedVarLong(in);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    public static void writeUnsignedVarLong(ByteBufferStream out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) (v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    public static long readUnsignedVarLong(ByteBuffer in) {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return v;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    public static void writeSize(ByteBufferStream out, int size) {
+        writeUnsignedVarLong(out, size);
+    }
+
+    public static int readSize(ByteBuffer in) {
+        long n = readUnsignedVarLong(in);
+        if (n > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Malformed size " + n);
+        }
+        return (int) n;
+    }
+
+    /**
+     * Size of bytes to read, checked against the input before allocating, a corrupt size failing instead of allocating up to 2 GB.
+     */
+    private static int readByteCount(ByteBuffer in) {
+        int n = readSize(in);
+        if (n > in.remaining()) {
+            throw new IllegalArgumentException("Malformed size " + n + ", " + in.remaining() + " bytes left");
+        }
+        return n;
+    }
+
+    public static void writeFixed64(ByteBufferStream out, long v) {
+        out.ensure(8);
+        byte[] b = out.getBuffer();
+        int p = out.size();
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            b[p++] = (byte) (v >>> shift);
+        }
+        out.moveSize(8);
+    }
+
+    public static long readFixed64(ByteBuffer in) {
+        return in.getLong();
+    }
+
+    public static void writeDouble(ByteBufferStream out, double v) {
+        writeFixed64(out, Double.doubleToRawLongBits(v));
+    }
+
+    public static double readDouble(ByteBuffer in) {
+        return Double.longBitsToDouble(in.getLong());
+    }
+
+    public static void writeString(ByteBufferStream out, String v) {
+        writeBytes(out, FileUtils.stringToBytes(v, FileUtils.UTF_8));
+    }
+
+    public static String readString(ByteBuffer in) {
+        byte[] b = new byte[readByteCount(in)];
+        in.get(b);
+        return FileUtils.bytesToString(b, FileUtils.UTF_8);
+    }
+
+    public static void writeBytes(ByteBufferStream out, byte[] v) {
+        writeSize(out, v.length);
+        out.write(v);
+    }
+
+    public static void writeBytes(ByteBufferStream out, ByteArray v) {
+        writeBytes(out, v.toByteArrayUnsafe());
+    }
+
+    public static ByteBufferStream readBytes(ByteBuffer in) {
+        byte[] b = new byte[readByteCount(in)];
+        in.get(b);
+        return new ByteBufferStream(b);
+    }
+}
@@ -1,32 +1,97 @@
 package io.gaultier.modeling.model.data;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
 
+import io.gaultier.modeling.util.base.SizeHint;
 import io.gaultier.modeling.util.base.WrappedException;
 
 public final class DataDefinition<T extends ModelData<T>> {
 
     private final Class<T> dataClass;
+    private final Supplier<T> factory;
     private final List<FieldDefinition<?, T>> fields = new ArrayList<FieldDefinition<?, T>>();
     private final Map<String, FieldDefinition<?, T>> fieldsByName = new LinkedHashMap<String, FieldDefinition<?, T>>();
     private final Collection<FieldDefinition<?, T>> persistedFields = new ArrayList<FieldDefinition<?, T>>();
     private final Collection<FieldDefinition<?, T>> primaryKey = new ArrayList<FieldDefinition<?, T>>();
     private String tableName;
+    private final SizeHint serializedSize = new SizeHint();
+    private volatile BinaryCodec<T> binaryCodec;
+    private volatile int typeId = -1;
 
-    private DataDefinition(Class<T> clazz) {
+    private DataDefinition(Class<T> clazz, Supplier<T> f) {
         dataClass = clazz;
+        factory = f;
     }
 
+    /**
+     * Definition of a hand-written class, created with a factory spun from its public constructor.
+     */
     public static <T extends ModelData<T>> DataDefinition<T> create(Class<T> clazz, String tableName) {
-        DataDefinition<T> d = new DataDefinition<T>(clazz);
+        return create(clazz, constructorFactory(clazz), tableName);
+    }
+
+    /**
+     * @param factory Creation of the data, the constructor reference in the generated stubs.
+     */
+    public static <T extends ModelData<T>> DataDefinition<T> create(Class<T> clazz, Supplier<T> factory, String tableName) {
+        DataDefinition<T> d = new DataDefinition<T>(clazz, factory);
         d.tableName = tableName;
         return d;
     }
 
+    /**
+     * @return A supplier calling the no argument constructor: spun like a constructor reference when the class
+     * is visible from this class loader, else through its method handle, by reflection if not accessible.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Supplier<T> constructorFactory(final Class<T> clazz) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            final MethodHandle ctor = lookup.findConstructor(clazz, MethodType.methodType(void.class));
+            if (!isVisible(clazz)) {
+                return new Supplier<T>() {
+                    @Override
+                    public T get() {
+                        try {
+                            return (T) ctor.invoke();
+                        } catch (RuntimeException e) {
+                            throw e;
+                        } catch (Error e) {
+                            throw e;
+                        } catch (Throwable e) {
+                            throw new WrappedException(e);
+                        }
+                    }
+                };
+            }
+            CallSite site = LambdaMetafactory.metafactory(lookup, "get", MethodType.methodType(Supplier.class),
+                    MethodType.methodType(Object.class), ctor, MethodType.methodType(clazz));
+            return (Supplier<T>) site.getTarget().invoke();
+        } catch (Throwable e) {
+            return new Supplier<T>() {
+                @Override
+                public T get() {
+                    try {
+                        return clazz.getConstructor().newInstance();
+                    } catch (ReflectiveOperationException e) {
+                        throw new WrappedException(e);
+                    }
+                }
+            };
+        }
+    }
+
     public <FT> FieldDefinition<FT, T> createField(int index, String name, DataType type, Class<? extends Enum<?>> enumType, boolean list, DataDefinition<? extends ModelData<?>> objCl, boolean persisted, String columnName, boolean amf, boolean json, boolean html, PrimitiveSubstitution substitution, int syntaxesEncoded) {
 		FieldDefinition<FT, T> f = new FieldDefinition<FT, T>();
         f.init(this, index, name, type, enumType, list, objCl, persisted, columnName, amf, json, html, substitution, syntaxesEncoded);
@@ -45,6 +110,14 @@ public final class DataDefinition<T extends ModelData<T>> {
         primaryKey.add(f);
     }
 
+    private static boolean isVisible(Class<?> clazz) {
+        try {
+            return Class.forName(clazz.getName(), false, DataDefinition.class.getClassLoader()) == clazz;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
     public Class<T> getDataClass() {
         return dataClass;
     }
@@ -62,6 +135,37 @@ public final class DataDefinition<T extends ModelData<T>> {
         tableName = table;
     }
 
+    /**
+     * Learned size of the serialized objects of this type, to size buffers from
+     * {@link io.gaultier.modeling.util.base.ByteBufferStreamPool}.
+     * @return Shared hint.
+     */
+    public SizeHint getSerializedSizeHint() {
+        return serializedSize;
+    }
+
+    /**
+     * @return The generated codec, registered by the data object registry, null if none.
+     */
+    public BinaryCodec<T> getBinaryCodec() {
+        return binaryCodec;
+    }
+
+    public void setBinaryCodec(BinaryCodec<T> codec) {
+        binaryCodec = codec;
+    }
+
+    /**
+     * @return Type id given by the registry, -1 before the definition is looked up in it or without type ids.
+     */
+    public int getTypeId() {
+        return typeId;
+    }
+
+    void setTypeId(int id) {
+        typeId = id;
+    }
+
     public List<FieldDefinition<?, T>> getFields() {
         return fields;
     }
@@ -85,19 +189,30 @@ public final class DataDefinition<T extends ModelData<T>> {
     }
 
     public T createData() {
-        try {
-            return dataClass.newInstance();
-        } catch (InstantiationException e) {
-            throw new WrappedException(e);
-        } catch (IllegalAccessException e) {
-            throw new WrappedException(e);
-        }
+        return factory.get();
     }
 
     public DataList<T> createList() {
         return new DataList<T>(this);
     }
 
+    /**
+     * @return A builder several threads can append to, see {@link DataListBuilder}.
+     */
+    public DataListBuilder<T> createListBuilder() {
+        return new DataListBuilder<T>(this);
+    }
+
+    /**
+     * @return A collector of stream elements into a list of this definition.
+     */
+    public Collector<T, ?, DataList<T>> toList() {
+        return Collector.of(this::createList, DataList<T>::add, (left, right) -> {
+            left.addAll(right);
+            return left;
+        }, Collector.Characteristics.IDENTITY_FINISH);
+    }
+
     @SuppressWarnings("unchecked")
     public DataList<T> createList(Object[] values) {
         DataList<T> res = new DataList<T>(this);
@@ -0,0 +1,148 @@
+package io.gaultier.modeling.model.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Definitions of the data classes, by index, class, class name or type id.
+ * A data class is initialized on the first lookup of its definition, not when the registry is.
+ * Type ids are stable numbers given by the generator with -typeIds, to tag values in binary encodings.
+ */
+public final class DataDefinitionRegistry {
+
+    /**
+     * Access to the definitions, a switch on the index in the generated registry.
+     */
+    public interface Loader {
+
+        DataDefinition<?> load(int index);
+    }
+
+    private final String[] classNames;
+    private final int[] typeIds;
+    private final int[] indexesByTypeId;
+    private final Map<String, Integer> indexes;
+    private final Loader loader;
+    private final AtomicReferenceArray<DataDefinition<?>> definitions;
+    private final ClassValue<DataDefinition<?>> byClass = new ClassValue<DataDefinition<?>>() {
+        @Override
+        protected DataDefinition<?> computeValue(Class<?> c) {
+            DataDefinition<?> d = DataDefinitionRegistry.this.get(c.getName());
+            // A class of another loader with the same name is not the registered one
+            return d != null && d.getDataClass() == c ? d : null;
+        }
+    };
+
+    /**
+     * @param names Qualified names of the data classes, in index order.
+     */
+    public DataDefinitionRegistry(String[] names, Loader l) {
+        this(names, null, l);
+    }
+
+    /**
+     * @param names Qualified names of the data classes, in index order.
+     * @param ids Type ids of the classes, in index order, null if none.
+     */
+    public DataDefinitionRegistry(String[] names, int[] ids, Loader l) {
+        assert ids == null || ids.length == names.length;
+        classNames = names.clone();
+        typeIds = ids == null ? null : ids.clone();
+        int max = 0;
+        for (int i = 0; ids != null && i < ids.length; i++) {
+            max = Math.max(max, ids[i]);
+        }
+        indexesByTypeId = new int[ids == null ? 0 : max + 1];
+        Arrays.fill(indexesByTypeId, -1);
+        for (int i = 0; ids != null && i < ids.length; i++) {
+            assert indexesByTypeId[ids[i]] < 0 : ids[i];
+            indexesByTypeId[ids[i]] = i;
+        }
+        indexes = new HashMap<String, Integer>(names.length * 2);
+        for (int i = 0; i < names.length; i++) {
+            indexes.put(names[i], i);
+        }
+        loader = l;
+        definitions = new AtomicReferenceArray<DataDefinition<?>>(names.length);
+    }
+
+    public int size() {
+        return classNames.length;
+    }
+
+    public String getClassName(int index) {
+        return classNames[index];
+    }
+
+    /**
+     * @return Index of the class, -1 if none.
+     */
+    public int indexOf(String className) {
+        Integer i = indexes.get(className);
+        return i == null ? -1 : i;
+    }
+
+    public DataDefinition<?> get(int index) {
+        DataDefinition<?> d = definitions.get(index);
+        if (d == null) {
+            d = loader.load(index);
+            if (typeIds != null) {
+                d.setTypeId(typeIds[index]);
+            }
+            definitions.set(index, d);
+        }
+        return d;
+    }
+
+    /**
+     * @return Type id of the class at the index.
+     */
+    public int getTypeId(int index) {
+        if (typeIds == null) {
+            throw new IllegalStateException("No type ids, generate with -typeIds");
+        }
+        return typeIds[index];
+    }
+
+    /**
+     * @return Definition of the type id, null if none.
+     */
+    public DataDefinition<?> getByTypeId(int typeId) {
+        if (typeIds == null) {
+            throw new IllegalStateException("No type ids, generate with -typeIds");
+        }
+        int i = typeId >= 0 && typeId < indexesByTypeId.length ? indexesByTypeId[typeId] : -1;
+        return i < 0 ? null : get(i);
+    }
+
+    /**
+     * @return Definition of the class, null if not a registered data class.
+     */
+    public DataDefinition<?> get(String className) {
+        int i = indexOf(className);
+        return i < 0 ? null : get(i);
+    }
+
+    /**
+     * @return Definition of the class, null if not a registered data class.
+     */
+    public DataDefinition<?> get(Class<?> c) {
+        return byClass.get(c);
+    }
+
+    /**
+     * @return All the definitions, initializing all the data classes.
+     */
+    public List<DataDefinition<?>> getAll() {
+        List<DataDefinition<?>> res = new ArrayList<DataDefinition<?>>(classNames.length);
+        for (int i = 0; i < classNames.length; i++) {
+            res.add(get(i));
+        }
+        return Collections.unmodifiableList(res);
+    }
+}
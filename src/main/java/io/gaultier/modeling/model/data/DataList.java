@@ -7,10 +7,17 @@ import java.util.*;
 public final class DataList<T extends ModelData<T>> extends AbstractList<T> implements RandomAccess {
 
     private final DataDefinition<T> definition;
-    private final List<T> list = new ArrayList<T>();
+    private final List<T> list;
+    private volatile boolean frozen;
 
     DataList(DataDefinition<T> def) {
         definition = def;
+        list = new ArrayList<T>();
+    }
+
+    DataList(DataDefinition<T> def, int initialCapacity) {
+        definition = def;
+        list = new ArrayList<T>(initialCapacity);
     }
 
     public DataDefinition<T> getDefinition() {
@@ -29,26 +36,65 @@ public final class DataList<T extends ModelData<T>> extends AbstractList<T> impl
 
     @Override
     public void add(int index, T element) {
+        checkNotFrozen();
         assert element == null || element.getDefinition() == definition;
         list.add(index, element);
     }
 
     @Override
     public T set(int index, T element) {
+        checkNotFrozen();
         assert element == null || element.getDefinition() == definition;
         return list.set(index, element);
     }
 
     @Override
     public T remove(int index) {
+        checkNotFrozen();
         return list.remove(index);
     }
 
+    /**
+     * Splits on index ranges of the backing array, so {@link #parallelStream()} splits evenly.
+     * @return A SIZED and SUBSIZED spliterator.
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        return list.spliterator();
+    }
+
     //TODO AL: Who needs this ?
     public List<T> getList() {
+        if (frozen) {
+            return Collections.unmodifiableList(list);
+        }
         return list;
     }
 
+    /**
+     * Make this list, and all the objects it contains, read-only.
+     * See {@link ModelData#freeze()}.
+     * @return This.
+     */
+    public DataList<T> freeze() {
+        DataUtils.freeze(this);
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    void markFrozen() {
+        frozen = true;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new UnsupportedOperationException("DataList of " + definition.getEntityName() + " is frozen");
+        }
+    }
+
     public String toString(boolean deep, boolean full) {
         return toString(deep ? new IdentityHashMap<Object, Object>() : null, full);
     }
@@ -81,6 +127,7 @@ public final class DataList<T extends ModelData<T>> extends AbstractList<T> impl
     }
 
     public DataList<T> sortIt(Comparator<T> cmp) {
+        checkNotFrozen();
         Collections.sort(list, cmp);
         return this;
     }
@@ -0,0 +1,88 @@
+package io.gaultier.modeling.model.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Collects the elements of a {@link DataList} from several producer threads.
+ * Each producer appends to a stripe chosen from its thread, each stripe having its own lock,
+ * so concurrent producers seldom contend.
+ * Order is kept for the elements of one producer, not between producers.
+ */
+public final class DataListBuilder<T extends ModelData<T>> {
+
+    private final DataDefinition<T> definition;
+    private final List<List<T>> stripes;
+    private final int mask;
+
+    DataListBuilder(DataDefinition<T> def) {
+        definition = def;
+        int n = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+        stripes = new ArrayList<List<T>>(n);
+        for (int i = 0; i < n; i++) {
+            stripes.add(new ArrayList<T>());
+        }
+        mask = n - 1;
+    }
+
+    public DataDefinition<T> getDefinition() {
+        return definition;
+    }
+
+    public DataListBuilder<T> add(T element) {
+        assert element == null || element.getDefinition() == definition;
+        List<T> s = stripe();
+        synchronized (s) {
+            s.add(element);
+        }
+        return this;
+    }
+
+    /**
+     * Append a batch of elements, taking the stripe lock once.
+     * @param elements Elements, kept in order.
+     * @return This.
+     */
+    public DataListBuilder<T> addAll(Collection<? extends T> elements) {
+        List<T> s = stripe();
+        synchronized (s) {
+            for (T e : elements) {
+                assert e == null || e.getDefinition() == definition;
+                s.add(e);
+            }
+        }
+        return this;
+    }
+
+    public int size() {
+        int n = 0;
+        for (List<T> s : stripes) {
+            synchronized (s) {
+                n += s.size();
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Copy the collected elements into a list of the exact size.
+     * Elements added while building may or may not be included.
+     * @return New list.
+     */
+    public DataList<T> build() {
+        DataList<T> res = new DataList<T>(definition, size());
+        for (List<T> s : stripes) {
+            synchronized (s) {
+                res.addAll(s);
+            }
+        }
+        return res;
+    }
+
+    private List<T> stripe() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9e3779b9;
+        return stripes.get((h ^ (h >>> 16)) & mask);
+    }
+}
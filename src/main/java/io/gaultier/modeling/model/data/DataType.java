@@ -4,6 +4,7 @@ import java.io.*;
 import java.nio.*;
 import java.sql.*;
 import java.text.*;
+import java.time.format.*;
 import java.util.Date;
 
 import io.gaultier.modeling.model.*;
@@ -90,6 +91,10 @@ public enum DataType {
         return null;
     }
 
+    /**
+     * A {@link DirectByteArray} is streamed to the driver, which may read it only when the statement executes,
+     * like with addBatch: it must not be released nor changed before. Other binary values are copied.
+     */
     public void setOnPreparedStatement(PreparedStatement ps, int index, Object value) throws SQLException {
         switch (this) {
         case INTEGER:
@@ -146,14 +151,19 @@ public enum DataType {
             if (value == null) {
                 ps.setNull(index, Types.TIMESTAMP);
             } else {
-                ps.setTimestamp(index, new Timestamp(((Date) value).getTime()));
+                ps.setTimestamp(index, value instanceof Timestamp ? (Timestamp) value : new Timestamp(((Date) value).getTime()));
             }
             break;
         case BINARY:
             if (value == null) {
                 ps.setNull(index, Types.VARBINARY);
             } else {
-                ps.setBytes(index, ((ByteArray) value).toByteArray());
+                ByteArray a = (ByteArray) value;
+                if (a instanceof DirectByteArray) {
+                    ps.setBinaryStream(index, a.getInput(), a.size());
+                } else {
+                    ps.setBytes(index, a.toByteArray());
+                }
             }
             break;
         default:
@@ -175,7 +185,7 @@ public enum DataType {
         case STRING:
             return quote((String) value);
         case DATETIME:
-            return "date '" + new SimpleDateFormat("yyyyMMddHHmmss").format((Date) value) + "'";
+            return "date '" + DateTimeCodec.SQL.format((Date) value) + "'";
         }
         assert false : this;
         return null;
@@ -262,10 +272,21 @@ public enum DataType {
     }
 
     public String toString(Object value, boolean full) {
-        return toString(value, full, null/*new SimpleDateFormat("yyyy-MM-dd HH:mm:ss")*/); //FIX ME Total shit: heavy object created each time
+        return toString(value, full, (DateTimeCodec) null);
     }
 
+    /**
+     * @deprecated Use {@link #toString(Object, boolean, DateTimeCodec)}, SimpleDateFormat is neither cheap nor thread safe.
+     */
+    @Deprecated
     public String toString(Object value, boolean full, SimpleDateFormat format) {
+        if (this == DATETIME && format != null) {
+            return format.format((Date) value);
+        }
+        return toString(value, full, (DateTimeCodec) null);
+    }
+
+    public String toString(Object value, boolean full, DateTimeCodec codec) {
         switch (this) {
         case INTEGER:
         case LONG:
@@ -281,10 +302,7 @@ public enum DataType {
             }
             return s;
         case DATETIME:
-            if (format == null) {
-                format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-            }
-            return format.format((Date) value);
+            return (codec == null ? DateTimeCodec.DISPLAY : codec).format((Date) value);
             //return String.valueOf(((Date) value).getTime());
         case BINARY:
             return ((ByteArray) value).toHexRepresentation(false, full);
@@ -294,10 +312,32 @@ public enum DataType {
     }
 
     public Object fromString(String in) {
-        return fromString(in, null);
+        return fromString(in, (DateTimeCodec) null);
     }
 
+    /**
+     * @deprecated Use {@link #fromString(String, DateTimeCodec)}, SimpleDateFormat is neither cheap nor thread safe.
+     */
+    @Deprecated
     public Object fromString(String in, SimpleDateFormat format) {
+        if (this == DATETIME && format != null) {
+            try {
+                return format.parse(in);
+            }
+            catch (ParseException e) {
+                
+                return null;
+            }
+        }
+        return fromString(in, (DateTimeCodec) null);
+    }
+
+    /**
+     * @param in Text.
+     * @param codec Format of DATETIME values, null for milliseconds since epoch.
+     * @return Value, null if a DATETIME does not match the codec.
+     */
+    public Object fromString(String in, DateTimeCodec codec) {
         switch (this) {
         case INTEGER:
             return Integer.valueOf(in);
@@ -312,13 +352,13 @@ public enum DataType {
         case STRING:
             return in.length() == 0 ? null : in;
         case DATETIME:
-            if (format == null) {
+            if (codec == null) {
                 return new Date(Long.valueOf(in));
             }
             try {
-                return format.parse(in);
+                return codec.parse(in);
             }
-            catch (ParseException e) {
+            catch (DateTimeParseException e) {
                 
                 return null;
             }
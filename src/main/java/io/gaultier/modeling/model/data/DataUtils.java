@@ -233,6 +233,72 @@ public final class DataUtils {
         return o;
     }
 
+    /**
+     * Freeze a graph of data objects and lists, see {@link ModelData#freeze()}.
+     * Objects are marked from the leaves up to the root, so a thread seeing the root frozen sees the whole graph frozen.
+     * @param o Root object or list.
+     */
+    public static void freeze(Object o) {
+        if (o == null) {
+            return;
+        }
+        IdentityHashMap<Object, Object> visited = new IdentityHashMap<Object, Object>();
+        List<Object> marked = new ArrayList<Object>();
+        LinkedList<Object> pending = new LinkedList<Object>();
+
+        pending.add(o);
+        for (;;) {
+            Object p = pending.pollFirst();
+            if (p == null) {
+                break;
+            }
+            if (visited.put(p, p) != null) {
+                continue;
+            }
+            if (p instanceof ModelData<?>) {
+                ModelData<?> d = (ModelData<?>) p;
+                if (d.isFrozen()) {
+                    // Whole sub graph is already frozen
+                    continue;
+                }
+                marked.add(d);
+                for (FieldDefinition<?, ?> f : d.getDefinition().getFields()) {
+                    if (f.getType().isMutable()) {
+                        Object v = d.getValue(f.getIndex());
+                        if (v != null) {
+                            pending.add(v);
+                        }
+                    }
+                }
+            }
+            else if (p instanceof DataList<?>) {
+                DataList<?> l = (DataList<?>) p;
+                if (l.isFrozen()) {
+                    continue;
+                }
+                marked.add(l);
+                for (Object v : l) {
+                    if (v != null) {
+                        pending.add(v);
+                    }
+                }
+            }
+            else {
+                assert false : p.getClass();
+            }
+        }
+
+        for (int i = marked.size(); i-- > 0;) {
+            Object p = marked.get(i);
+            if (p instanceof ModelData<?>) {
+                ((ModelData<?>) p).markFrozen();
+            }
+            else {
+                ((DataList<?>) p).markFrozen();
+            }
+        }
+    }
+
     private static Object copy(List<SubstitutableReference> substitutions, List<Object> pending, Object o) {
         if (o instanceof List<?>) {
             List<?> l;
@@ -0,0 +1,151 @@
+package io.gaultier.modeling.model.data;
+
+import java.text.ParsePosition;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.ResolverStyle;
+import java.time.temporal.TemporalAccessor;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Text format of DATETIME values, with a pattern and a zone.
+ * Codecs are immutable, thread safe and cached: use {@link #of(String)} instead of creating a
+ * SimpleDateFormat for each value.
+ * Set on a field with {@link FieldDefinition#setDateTimeCodec(DateTimeCodec)}.
+ */
+public final class DateTimeCodec {
+
+    private static final ConcurrentMap<String, DateTimeCodec> CODECS = new ConcurrentHashMap<String, DateTimeCodec>();
+
+    /**
+     * Default format of {@link DataType#toString(Object, boolean)}, in the zone of the JVM at startup.
+     */
+    public static final DateTimeCodec DISPLAY = of("yyyy-MM-dd HH:mm:ss");
+    public static final DateTimeCodec DAY = of("yyyy-MM-dd");
+    /**
+     * Format of SQL date literals.
+     */
+    public static final DateTimeCodec SQL = of("yyyyMMddHHmmss");
+
+    private final String pattern;
+    private final ZoneId zone;
+    private final boolean keepSqlTimestamps;
+    private final DateTimeFormatter formatter;
+    private final DateTimeFormatter lenientFormatter;
+
+    private DateTimeCodec(String p, ZoneId z, boolean keep) {
+        pattern = p;
+        zone = z;
+        keepSqlTimestamps = keep;
+        formatter = DateTimeFormatter.ofPattern(p).withZone(z);
+        lenientFormatter = new DateTimeFormatterBuilder().parseLenient().appendPattern(p).toFormatter()
+                .withResolverStyle(ResolverStyle.LENIENT).withZone(z);
+    }
+
+    public static DateTimeCodec of(String pattern) {
+        return of(pattern, ZoneId.systemDefault());
+    }
+
+    public static DateTimeCodec of(String pattern, ZoneId zone) {
+        return of(pattern, zone, false);
+    }
+
+    private static DateTimeCodec of(String pattern, ZoneId zone, boolean keep) {
+        String key = pattern + '@' + zone.getId() + (keep ? "+ts" : "");
+        DateTimeCodec c = CODECS.get(key);
+        if (c == null) {
+            c = new DateTimeCodec(pattern, zone, keep);
+            DateTimeCodec prev = CODECS.putIfAbsent(key, c);
+            if (prev != null) {
+                c = prev;
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Values read from JDBC are kept as the {@link java.sql.Timestamp} (a Date) returned by the driver,
+     * instead of being copied to a new Date.
+     * @return Codec with the same pattern and zone.
+     */
+    public DateTimeCodec withSqlTimestamps() {
+        return of(pattern, zone, true);
+    }
+
+    public boolean isKeepSqlTimestamps() {
+        return keepSqlTimestamps;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    public String format(Date value) {
+        return format(value.getTime());
+    }
+
+    public String format(long epochMillis) {
+        return formatter.format(Instant.ofEpochMilli(epochMillis));
+    }
+
+    /**
+     * Parse a date, missing time fields are the start of the day in the zone of this codec.
+     * @param text Formatted date.
+     * @return Milliseconds since epoch.
+     * @throws java.time.format.DateTimeParseException If text does not match the pattern.
+     */
+    public long parseMillis(String text) {
+        return toMillis(formatter.parseBest(text, ZonedDateTime::from, LocalDateTime::from, LocalDate::from));
+    }
+
+    private long toMillis(TemporalAccessor t) {
+        if (t instanceof ZonedDateTime) {
+            return ((ZonedDateTime) t).toInstant().toEpochMilli();
+        }
+        if (t instanceof LocalDateTime) {
+            return ((LocalDateTime) t).atZone(zone).toInstant().toEpochMilli();
+        }
+        return ((LocalDate) t).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    public Date parse(String text) {
+        return new Date(parseMillis(text));
+    }
+
+    /**
+     * Parse a date like SimpleDateFormat.parse: fields are lenient and text after the pattern is ignored,
+     * so "2020-1-5" and "2020-01-05 12:00:00" are days.
+     * The prefix is found without exception nor SimpleDateFormat.
+     * @return Date, null if no prefix of text matches the pattern.
+     */
+    public Date parseLenient(String text) {
+        ParsePosition p = new ParsePosition(0);
+        if (lenientFormatter.parseUnresolved(text, p) == null || p.getErrorIndex() >= 0) {
+            return null;
+        }
+        CharSequence prefix = p.getIndex() == text.length() ? text : text.subSequence(0, p.getIndex());
+        try {
+            return new Date(toMillis(lenientFormatter.parseBest(prefix, ZonedDateTime::from, LocalDateTime::from, LocalDate::from)));
+        }
+        catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + '(' + pattern + ' ' + zone + ')';
+    }
+}
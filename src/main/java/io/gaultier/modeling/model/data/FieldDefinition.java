@@ -38,6 +38,16 @@ public class FieldDefinition<T, D extends ModelData<D>> implements Comparator<T>
         return this;
     }
 
+    /**
+     * Format this DATETIME field with the specified codec instead of the default one.
+     * @param codec Pattern and zone.
+     * @return This.
+     */
+    public FieldDefinition<T, D> setDateTimeCodec(DateTimeCodec codec) {
+        type.setDateTimeCodec(codec);
+        return this;
+    }
+
     public DataDefinition<D> getDefinition() {
         return definition;
     }
@@ -14,8 +14,8 @@ public final class FieldType {
     private PrimitiveSubstitution substitution;
     private boolean isList;
     private DataDefinition<? extends ModelData<?>> objectType;
-    private EnumValues persistentValues;
-    private EnumValues amfValues;
+    private EnumTables enumTables;
+    private DateTimeCodec dateTimeCodec;
 
     FieldType(DataType t, Class<? extends Enum<?>> e, boolean list, DataDefinition<? extends ModelData<?>> objCl, PrimitiveSubstitution subst) {
         type = t;
@@ -23,17 +23,19 @@ public final class FieldType {
         isList = list;
         objectType = objCl;
         substitution = subst;
-        if (e == null) {
-            return;
-        }
-        /*if (!persisted) {
-            return;
-        }*/
-        assert type == null;
-        persistentValues = new PersistentEnumValues();
-        type = persistentValues.init(e);
-        amfValues = new AmfEnumValues();
-        amfValues.init(e);
+        assert e == null || type == null;
+    }
+
+    /**
+     * @return Values of the enum, looked up on first use rather than when the data class is initialized.
+     */
+    private EnumTables tables() {
+        EnumTables t = enumTables;
+        if (t == null) {
+            t = EnumTables.of(enumType);
+            enumTables = t;
+        }
+        return t;
     }
 
     public static FieldType getData(DataType data) {
@@ -49,6 +51,9 @@ public final class FieldType {
     }
 
     public DataType getType() {
+        if (enumType != null) {
+            return tables().getPersistentType();
+        }
         return type;
     }
 
@@ -78,15 +83,27 @@ public final class FieldType {
         }
     }
 
+    public DateTimeCodec getDateTimeCodec() {
+        return dateTimeCodec;
+    }
+
+    void setDateTimeCodec(DateTimeCodec codec) {
+        assert type == DataType.DATETIME : type;
+        dateTimeCodec = codec;
+    }
+
     public Object getOnResultSet(ResultSet rs, int index) throws SQLException {
+        if (dateTimeCodec != null && dateTimeCodec.isKeepSqlTimestamps()) {
+            return rs.getTimestamp(index);
+        }
         if (enumType == null) {
             return type.getOnResultSet(rs, index);
         }
-        Object value = type.getOnResultSet(rs, index);
+        Object value = getType().getOnResultSet(rs, index);
         if (value == null) {
             return null;
         }
-        Object v = persistentValues.valueToEnum(value);
+        Object v = tables().getPersistentValues().valueToEnum(value);
         assert v != null : index  + ": " + enumType.getName() + " = " + value;
         return v;
     }
@@ -97,10 +114,10 @@ public final class FieldType {
         }
         else {
             if (value != null) {
-                value = persistentValues.enumToValue(value);
+                value = tables().getPersistentValues().enumToValue(value);
                 assert value != null;
             }
-            type.setOnPreparedStatement(ps, index, value);
+            getType().setOnPreparedStatement(ps, index, value);
         }
     }
 
@@ -109,10 +126,10 @@ public final class FieldType {
             return type.getSqlForValue(value);
         }
         if (value != null) {
-            value = persistentValues.enumToValue(value);
+            value = tables().getPersistentValues().enumToValue(value);
             assert value != null;
         }
-        return type.getSqlForValue(value);
+        return getType().getSqlForValue(value);
     }
 
     public boolean equals(Object va, Object vb) {
@@ -171,7 +188,7 @@ public final class FieldType {
         if (enumType != null) {
             return value.toString();
         }
-        return type.toString(value, full);
+        return type.toString(value, full, dateTimeCodec);
     }
 
     void writeAmf(ObjectOutput out, Object value) throws IOException {
@@ -184,7 +201,7 @@ public final class FieldType {
             }
         }
         else if (enumType != null) {
-            out.writeInt(value == null ? 0 : ((Integer) amfValues.enumToValue(value)).intValue());
+            out.writeInt(value == null ? 0 : ((Integer) tables().getAmfValues().enumToValue(value)).intValue());
         }
         else {
             type.writeAmf(out, value);
@@ -203,7 +220,7 @@ public final class FieldType {
             return in.readObject();
         }
         else if (enumType != null) {
-            return amfValues.valueToEnum(in.readInt());
+            return tables().getAmfValues().valueToEnum(in.readInt());
         }
         return type.readAmf(in, substitution);
     }
@@ -211,13 +228,13 @@ public final class FieldType {
 
     @SuppressWarnings("unchecked")
     public <T extends Enum<T>> T enumFromAmf(Integer v) {
-        return (T) amfValues.valueToEnum(v);
+        return (T) tables().getAmfValues().valueToEnum(v);
     }
 
     public Integer amfToEnum(Object enumValue) {
         Integer result = null;
         if (enumValue != null) {
-            return ((Integer) amfValues.enumToValue(enumValue));
+            return ((Integer) tables().getAmfValues().enumToValue(enumValue));
         }
         return result;
     }
@@ -232,9 +249,9 @@ public final class FieldType {
             type.serialize(b, value);
         }
         else {
-            value = persistentValues.enumToValue(value);
+            value = tables().getPersistentValues().enumToValue(value);
             assert value != null;
-            type.serialize(b, value);
+            getType().serialize(b, value);
         }
     }
 
@@ -242,9 +259,9 @@ public final class FieldType {
         if (enumType == null) {
             return type.deserialize(b);
         }
-        Object value = type.deserialize(b);
+        Object value = getType().deserialize(b);
         assert value != null;
-        Object v = persistentValues.valueToEnum(value);
+        Object v = tables().getPersistentValues().valueToEnum(value);
         assert v != null;
         return v;
     }
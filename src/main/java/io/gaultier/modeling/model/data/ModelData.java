@@ -14,6 +14,7 @@ import io.gaultier.modeling.util.base.WrappedException;
 public abstract class ModelData<T extends ModelData<T>> {
 
 	private final Object[] values;
+	private volatile boolean frozen;
 
 	protected ModelData(int valuesCount) {
 		values = new Object[valuesCount];
@@ -24,6 +25,7 @@ public abstract class ModelData<T extends ModelData<T>> {
 	}
 
 	public void setValue(int index, Object value) {
+		checkNotFrozen();
 		if (value != null) {
 			getDefinition().getField(index).getType().checkType(value);
 		}
@@ -38,9 +40,40 @@ public abstract class ModelData<T extends ModelData<T>> {
 
 	public <FT> void setValue(FieldDefinition<FT, T> field, Object value) {
 		assert field.getDefinition() == getDefinition() : field.getDefinition().getDataClass().getSimpleName() + "." + field.getName() + " not in " + getClass().getSimpleName();
+		checkNotFrozen();
 		values[field.getIndex()] = value;
 	}
 
+	/**
+	 * Make this object, and all the objects and lists it references, read-only.
+	 * A frozen graph can be shared by any number of threads without copy nor lock:
+	 * it is safely published to any thread seeing {@link #isFrozen()} on it.
+	 * Use {@link #shallowCopy()} or {@link DataUtils#deepCopy(Object)} to get a mutable copy.
+	 * @return This.
+	 */
+	@SuppressWarnings("unchecked")
+	public final T freeze() {
+		DataUtils.freeze(this);
+		return (T) this;
+	}
+
+	/**
+	 * @return True if this object is read-only, its content (and encodings of it) will never change.
+	 */
+	public final boolean isFrozen() {
+		return frozen;
+	}
+
+	final void markFrozen() {
+		frozen = true;
+	}
+
+	private void checkNotFrozen() {
+		if (frozen) {
+			throw new UnsupportedOperationException(getClass().getSimpleName() + " is frozen");
+		}
+	}
+
 	public abstract DataDefinition<T> getDefinition();
 
 	public final boolean entityEquals(T o) {
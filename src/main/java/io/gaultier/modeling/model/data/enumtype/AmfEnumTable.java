@@ -0,0 +1,77 @@
+package io.gaultier.modeling.model.data.enumtype;
+
+import java.util.*;
+
+/**
+ * AMF codes of the constants of an enum, the same as {@link AmfEnumValues} but looked up by ordinal
+ * or by code in arrays, without boxing nor hashing. Used by the generated Externalizable stubs.
+ */
+public final class AmfEnumTable<E extends Enum<E>> {
+
+    private final Class<E> enumClass;
+    private final int[] codes;
+    private final boolean[] coded;
+    private final Object[] byCode;
+    private final Map<Integer, E> byCodeMap;
+
+    private AmfEnumTable(Class<E> e) {
+        enumClass = e;
+        E[] cs = e.getEnumConstants();
+        codes = new int[cs.length];
+        coded = new boolean[cs.length];
+        Map<Integer, E> m = new HashMap<Integer, E>();
+        int max = -1;
+        boolean dense = true;
+        for (E c : cs) {
+            Integer v = c instanceof AmfEnum ? ((AmfEnum) c).getAmfValue() : Integer.valueOf(c.ordinal());
+            if (v == null) {
+                continue;
+            }
+            codes[c.ordinal()] = v.intValue();
+            coded[c.ordinal()] = true;
+            m.put(v, c);
+            dense &= v.intValue() >= 0;
+            max = Math.max(max, v.intValue());
+        }
+        if (dense && max < cs.length * 2 + 16) {
+            byCode = new Object[max + 1];
+            for (Map.Entry<Integer, E> en : m.entrySet()) {
+                byCode[en.getKey().intValue()] = en.getValue();
+            }
+            byCodeMap = null;
+        }
+        else {
+            byCode = null;
+            byCodeMap = m;
+        }
+    }
+
+    public static <E extends Enum<E>> AmfEnumTable<E> of(Class<E> e) {
+        return new AmfEnumTable<E>(e);
+    }
+
+    /**
+     * @param value Constant or null.
+     * @return Its code, 0 for null.
+     */
+    public int encode(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        int o = enumClass.cast(value).ordinal();
+        if (!coded[o]) {
+            throw new IllegalArgumentException("No AMF value for " + value);
+        }
+        return codes[o];
+    }
+
+    /**
+     * @return The constant of the code, null if none.
+     */
+    public E decode(int code) {
+        if (byCode == null) {
+            return byCodeMap.get(code);
+        }
+        return code >= 0 && code < byCode.length ? enumClass.cast(byCode[code]) : null;
+    }
+}
@@ -0,0 +1,45 @@
+package io.gaultier.modeling.model.data.enumtype;
+
+import io.gaultier.modeling.model.data.*;
+
+/**
+ * Persistent and AMF values of an enum, built on first use and shared by all the fields of the enum.
+ */
+public final class EnumTables {
+
+    private static final ClassValue<EnumTables> TABLES = new ClassValue<EnumTables>() {
+        @SuppressWarnings("unchecked")
+        @Override
+        protected EnumTables computeValue(Class<?> e) {
+            return new EnumTables((Class<? extends Enum<?>>) e);
+        }
+    };
+
+    private final EnumValues persistentValues = new PersistentEnumValues();
+    private final DataType persistentType;
+    private final EnumValues amfValues = new AmfEnumValues();
+
+    private EnumTables(Class<? extends Enum<?>> e) {
+        persistentType = persistentValues.init(e);
+        amfValues.init(e);
+    }
+
+    public static EnumTables of(Class<? extends Enum<?>> e) {
+        return TABLES.get(e);
+    }
+
+    /**
+     * @return Type of the persistent values.
+     */
+    public DataType getPersistentType() {
+        return persistentType;
+    }
+
+    public EnumValues getPersistentValues() {
+        return persistentValues;
+    }
+
+    public EnumValues getAmfValues() {
+        return amfValues;
+    }
+}
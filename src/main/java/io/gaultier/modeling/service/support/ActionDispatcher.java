@@ -0,0 +1,32 @@
+package io.gaultier.modeling.service.support;
+
+/**
+ * Calls of the action methods of a control class without reflection, generated with -controls as its ControlDispatcher.
+ * The action of a method actionShowList is showList, dispatched with a switch on the action name.
+ */
+public interface ActionDispatcher<C> {
+
+    Class<C> getControlClass();
+
+    /**
+     * @return Names of the actions.
+     */
+    String[] getActions();
+
+    boolean hasAction(String action);
+
+    /**
+     * Call the action method.
+     * @param args Arguments of the method, numbers may be of any Number class.
+     * @return Result of the method, null if void.
+     * @throws IllegalArgumentException If no such action, or not the number of arguments of the method.
+     */
+    Object dispatch(C control, String action, Object... args) throws Exception;
+
+    static void checkArguments(String action, Object[] args, int count) {
+        int n = args == null ? 0 : args.length;
+        if (n != count) {
+            throw new IllegalArgumentException(action + " takes " + count + " arguments, not " + n);
+        }
+    }
+}
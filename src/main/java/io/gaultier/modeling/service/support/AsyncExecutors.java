@@ -0,0 +1,84 @@
+package io.gaultier.modeling.service.support;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Default executor of the generated async facades, running each call on its own virtual thread when the JVM has them,
+ * else on a cached pool of daemon threads.
+ * The calls of the facades block, so they are not run on the common fork join pool.
+ */
+public final class AsyncExecutors {
+
+    private static final MethodHandle VIRTUAL_THREAD_PER_TASK = findVirtualThreadPerTask();
+    private static volatile ExecutorService defaultExecutor;
+
+    private AsyncExecutors() {
+    }
+
+    public static ExecutorService getDefault() {
+        ExecutorService e = defaultExecutor;
+        if (e == null) {
+            synchronized (AsyncExecutors.class) {
+                e = defaultExecutor;
+                if (e == null) {
+                    e = create();
+                    defaultExecutor = e;
+                }
+            }
+        }
+        return e;
+    }
+
+    /**
+     * Replace the default executor, for the async facades created after.
+     */
+    public static void setDefault(ExecutorService e) {
+        defaultExecutor = e;
+    }
+
+    /**
+     * @return True if the JVM has virtual threads.
+     */
+    public static boolean hasVirtualThreads() {
+        return VIRTUAL_THREAD_PER_TASK != null;
+    }
+
+    private static ExecutorService create() {
+        if (VIRTUAL_THREAD_PER_TASK != null) {
+            try {
+                return (ExecutorService) VIRTUAL_THREAD_PER_TASK.invoke();
+            }
+            catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        final AtomicInteger count = new AtomicInteger();
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "facade-async-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * @return Executors.newVirtualThreadPerTaskExecutor, null before Java 21.
+     */
+    private static MethodHandle findVirtualThreadPerTask() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class));
+        }
+        catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package io.gaultier.modeling.service.support;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Method of a service whose results are cached by its generated adapter, in a {@link ResponseCache} keyed by the arguments.
+ * Only for methods returning the same result for the same arguments.
+ * Each call gets a deep copy of the data objects and lists of the cached result, nothing is frozen.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.METHOD)
+public @interface CacheResponse {
+
+    /**
+     * Time a result is kept, 0 for no expiration.
+     */
+    int ttlSeconds() default 60;
+
+    /**
+     * Maximum number of results kept, the least recently used are evicted.
+     */
+    int maxEntries() default 1000;
+
+    /**
+     * Names of the parameters of the key, all if empty.
+     * Data objects and lists are compared by identity: the method is not wrapped if they are in the key.
+     */
+    String[] key() default {};
+}
@@ -0,0 +1,192 @@
+package io.gaultier.modeling.service.support;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Calls of a service sent in one request, queued by the Batch of a generated ServiceAmf stub,
+ * and dispatched to the facade by the invokeBatch method of the generated FacadeAmf adapter.
+ * The request is the method names and their arguments, the response the results and the errors,
+ * as plain arrays for any transport.
+ */
+public final class CallBatch {
+
+    /**
+     * Name of the adapter method receiving a batch.
+     */
+    public static final String METHOD = "invokeBatch";
+
+    /**
+     * Call of a method of an adapter, a switch on the method name in the generated adapter.
+     */
+    public interface Dispatcher {
+
+        Object invoke(String method, Object[] args) throws Exception;
+    }
+
+    /**
+     * Result of a call, once its batch is sent.
+     */
+    public static final class Call<T> {
+
+        private final String method;
+        private boolean done;
+        private Object value;
+        private String error;
+
+        Call(String m) {
+            method = m;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public boolean isDone() {
+            return done;
+        }
+
+        /**
+         * @return The error of the call on the server, null if none.
+         */
+        public String getError() {
+            return error;
+        }
+
+        /**
+         * @return The result, null for a void method.
+         * @throws BatchException If the call failed.
+         */
+        @SuppressWarnings("unchecked")
+        public T get() {
+            if (!done) {
+                throw new IllegalStateException("Batch of " + method + " not sent");
+            }
+            if (error != null) {
+                throw new BatchException(method + ": " + error);
+            }
+            return (T) value;
+        }
+    }
+
+    /**
+     * Failure of a call of a batch, the other calls of the batch are not affected.
+     */
+    public static final class BatchException extends RuntimeException {
+
+        private static final long serialVersionUID = 4385261870314625337L;
+
+        BatchException(String msg) {
+            super(msg);
+        }
+    }
+
+    private final List<String> methods = new ArrayList<String>();
+    private final List<Object[]> arguments = new ArrayList<Object[]>();
+    private final List<Call<?>> calls = new ArrayList<Call<?>>();
+    private boolean sent;
+
+    /**
+     * Queue a call.
+     * @return Its result, available once the batch is sent.
+     */
+    public <T> Call<T> add(String method, Object... args) {
+        if (sent) {
+            throw new IllegalStateException("Batch already sent");
+        }
+        Call<T> c = new Call<T>(method);
+        methods.add(method);
+        arguments.add(args);
+        calls.add(c);
+        return c;
+    }
+
+    public int size() {
+        return calls.size();
+    }
+
+    public String[] getMethods() {
+        return methods.toArray(new String[methods.size()]);
+    }
+
+    public Object[][] getArguments() {
+        return arguments.toArray(new Object[arguments.size()][]);
+    }
+
+    /**
+     * Give the calls their results.
+     * @param response Response of {@link #dispatch}.
+     */
+    public void complete(Object response) {
+        Object[] r = (Object[]) response;
+        Object[] values = (Object[]) r[0];
+        Object[] errors = (Object[]) r[1];
+        if (values.length != calls.size() || errors.length != calls.size()) {
+            throw new IllegalArgumentException("Response of " + values.length + " calls for " + calls.size());
+        }
+        for (int i = 0; i < values.length; i++) {
+            Call<?> c = calls.get(i);
+            c.value = values[i];
+            c.error = (String) errors[i];
+            c.done = true;
+        }
+        sent = true;
+    }
+
+    /**
+     * Run the calls of a batch, each failure only failing its call.
+     * @param executor Executor running the calls in parallel, null to run them in order on this thread.
+     * @return The response: the array of the results, and the array of the errors, null for the calls not failing.
+     */
+    public static Object[] dispatch(final Dispatcher d, final String[] methods, final Object[][] args, Executor executor) {
+        if (methods.length != args.length) {
+            throw new IllegalArgumentException(methods.length + " methods for " + args.length + " arguments");
+        }
+        Object[] values = new Object[methods.length];
+        String[] errors = new String[methods.length];
+        if (executor == null || methods.length <= 1) {
+            for (int i = 0; i < methods.length; i++) {
+                try {
+                    values[i] = d.invoke(methods[i], args[i]);
+                }
+                catch (Exception e) {
+                    errors[i] = e.toString();
+                }
+            }
+            return new Object[] { values, errors };
+        }
+        List<FutureTask<Object>> tasks = new ArrayList<FutureTask<Object>>(methods.length);
+        for (int i = 0; i < methods.length; i++) {
+            final int n = i;
+            FutureTask<Object> t = new FutureTask<Object>(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    return d.invoke(methods[n], args[n]);
+                }
+            });
+            tasks.add(t);
+            executor.execute(t);
+        }
+        for (int i = 0; i < methods.length; i++) {
+            try {
+                values[i] = tasks.get(i).get();
+            }
+            catch (ExecutionException e) {
+                errors[i] = e.getCause().toString();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (int j = i; j < methods.length; j++) {
+                    tasks.get(j).cancel(true);
+                    errors[j] = e.toString();
+                }
+                break;
+            }
+        }
+        return new Object[] { values, errors };
+    }
+}
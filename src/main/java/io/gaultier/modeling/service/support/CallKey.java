@@ -0,0 +1,49 @@
+package io.gaultier.modeling.service.support;
+
+import java.util.Arrays;
+
+/**
+ * Arguments of a call as decoded by a generated adapter, as a key.
+ * Numeric arguments, like ids as primitive longs and enums as ints, are kept unboxed.
+ */
+public final class CallKey {
+
+    private static final long[] NO_NUMBERS = new long[0];
+    private static final Object[] NO_OBJECTS = new Object[0];
+
+    private final long[] numbers;
+    private final Object[] objects;
+    private final int hash;
+
+    /**
+     * @param n Numeric arguments, null if none.
+     * @param o Other arguments, null if none.
+     */
+    public CallKey(long[] n, Object[] o) {
+        numbers = n == null ? NO_NUMBERS : n;
+        objects = o == null ? NO_OBJECTS : o;
+        hash = 31 * Arrays.hashCode(numbers) + Arrays.deepHashCode(objects);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof CallKey)) {
+            return false;
+        }
+        CallKey k = (CallKey) o;
+        return hash == k.hash && Arrays.equals(numbers, k.numbers) && Arrays.deepEquals(objects, k.objects);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(numbers) + Arrays.deepToString(objects);
+    }
+}
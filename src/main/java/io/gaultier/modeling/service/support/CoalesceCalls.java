@@ -0,0 +1,27 @@
+package io.gaultier.modeling.service.support;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Method of a service whose concurrent calls with equal arguments share one execution in its generated adapter,
+ * through a {@link SingleFlight}.
+ * Results are not frozen: when calls shared an execution, each gets its own deep copy of the data objects and lists of the result.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.METHOD)
+public @interface CoalesceCalls {
+
+    /**
+     * Time a call waits for the execution it shares, 0 for no limit.
+     */
+    int timeoutMillis() default 0;
+
+    /**
+     * Names of the parameters of the key, all if empty.
+     * Data objects and lists are compared by identity: the method is not wrapped if they are in the key.
+     */
+    String[] key() default {};
+}
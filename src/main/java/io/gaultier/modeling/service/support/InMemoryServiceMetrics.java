@@ -0,0 +1,117 @@
+package io.gaultier.modeling.service.support;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Default metrics of the service methods, kept in memory: calls, errors, calls in flight,
+ * and histograms of the latencies and of the sizes of the returned collections.
+ */
+public final class InMemoryServiceMetrics extends ServiceMetrics {
+
+    public static final class MethodMetrics implements Recorder {
+
+        private final String name;
+        private final LongAdder errors = new LongAdder();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final LogLinearHistogram latencies = new LogLinearHistogram();
+        private final LogLinearHistogram elements = new LogLinearHistogram();
+
+        MethodMetrics(String n) {
+            name = n;
+        }
+
+        @Override
+        public long start() {
+            inFlight.incrementAndGet();
+            return System.nanoTime();
+        }
+
+        @Override
+        public void end(long start, int count, boolean failed) {
+            latencies.record(System.nanoTime() - start);
+            if (failed) {
+                errors.increment();
+            }
+            else if (count >= 0) {
+                elements.record(count);
+            }
+            inFlight.decrementAndGet();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCalls() {
+            return latencies.getCount();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public int getInFlight() {
+            return inFlight.get();
+        }
+
+        /**
+         * @return Latencies in nanoseconds, of the calls failing too.
+         */
+        public LogLinearHistogram getLatencies() {
+            return latencies;
+        }
+
+        /**
+         * @return Sizes of the returned collections.
+         */
+        public LogLinearHistogram getElements() {
+            return elements;
+        }
+
+        @Override
+        public String toString() {
+            String s = name + " calls=" + getCalls() + " errors=" + getErrors() + " inFlight=" + getInFlight()
+                    + " p50=" + latencies.getValueAtPercentile(50) / 1000 + "us p99=" + latencies.getValueAtPercentile(99) / 1000
+                    + "us max=" + latencies.getMax() / 1000 + "us";
+            if (elements.getCount() > 0) {
+                s += " elements p50=" + elements.getValueAtPercentile(50) + " max=" + elements.getMax();
+            }
+            return s;
+        }
+    }
+
+    private final ConcurrentHashMap<String, MethodMetrics> methods = new ConcurrentHashMap<String, MethodMetrics>();
+
+    @Override
+    public MethodMetrics getRecorder(String method) {
+        MethodMetrics m = methods.get(method);
+        if (m == null) {
+            MethodMetrics n = new MethodMetrics(method);
+            m = methods.putIfAbsent(method, n);
+            if (m == null) {
+                m = n;
+            }
+        }
+        return m;
+    }
+
+    /**
+     * @return Metrics of the methods, by name.
+     */
+    public Map<String, MethodMetrics> getMethods() {
+        return new TreeMap<String, MethodMetrics>(methods);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder();
+        for (MethodMetrics m : getMethods().values()) {
+            b.append(m).append('\n');
+        }
+        return b.toString();
+    }
+}
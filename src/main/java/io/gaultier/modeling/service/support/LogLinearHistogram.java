@@ -0,0 +1,95 @@
+package io.gaultier.modeling.service.support;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of positive values, like latencies in nanoseconds, recorded without locks.
+ * Buckets are linear up to 2^SUB_BITS, then each power of 2 is split in 2^SUB_BITS buckets,
+ * so a value is known within 1/2^SUB_BITS of itself whatever its magnitude, like in HDR histograms.
+ */
+public final class LogLinearHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int SUB_MASK = SUB_COUNT - 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray((64 - SUB_BITS) << SUB_BITS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    static int indexOf(long v) {
+        if (v < SUB_COUNT) {
+            return (int) v;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        return ((shift + 1) << SUB_BITS) + (int) ((v >>> shift) & SUB_MASK);
+    }
+
+    /**
+     * @return Highest value of the bucket.
+     */
+    static long highestOf(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int shift = (index >> SUB_BITS) - 1;
+        long lowest = (long) (SUB_COUNT + (index & SUB_MASK)) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * @param v Value, negative ones are recorded as 0.
+     */
+    public void record(long v) {
+        if (v < 0) {
+            v = 0;
+        }
+        buckets.incrementAndGet(indexOf(v));
+        count.increment();
+        sum.add(v);
+        for (long m = max.get(); v > m && !max.compareAndSet(m, v); m = max.get()) {
+            // Retry
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * @param percentile Percentile, from 0 to 100.
+     * @return Value at the percentile, rounded up to the highest value of its bucket, 0 if no values.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long n = 0;
+        long[] counts = new long[buckets.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+            n += counts[i];
+        }
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestOf(i), getMax());
+            }
+        }
+        return getMax();
+    }
+}
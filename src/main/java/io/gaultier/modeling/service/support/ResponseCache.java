@@ -0,0 +1,151 @@
+package io.gaultier.modeling.service.support;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import io.gaultier.modeling.model.data.DataList;
+import io.gaultier.modeling.model.data.DataUtils;
+import io.gaultier.modeling.model.data.ModelData;
+
+/**
+ * Results of a service method by {@link CallKey}, generated in its adapter for a {@link CacheResponse} method.
+ * Bounded, evicting the least recently used results, and expiring them after a time to live.
+ * Each call gets its own deep copy of the data objects and lists of a result, which it may change:
+ * they are not frozen, as the generated stubs fill computed fields in prepareForSerialization when encoded.
+ * Concurrent misses of the same key all run the call, unless also {@link CoalesceCalls}, the last result is kept.
+ */
+public final class ResponseCache<V> {
+
+    private static final class CachedResult<V> {
+
+        final V value;
+        final long time;
+
+        CachedResult(V v, long t) {
+            value = v;
+            time = t;
+        }
+    }
+
+    private final String name;
+    private final long ttlNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LinkedHashMap<CallKey, CachedResult<V>> entries;
+
+    /**
+     * @param n Name, for the counters.
+     * @param maxEntries Maximum number of results.
+     * @param ttlSeconds Time to live of a result, 0 for no expiration.
+     */
+    public ResponseCache(String n, final int maxEntries, int ttlSeconds) {
+        name = n;
+        ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        entries = new LinkedHashMap<CallKey, CachedResult<V>>(16, .75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CallKey, CachedResult<V>> eldest) {
+                if (size() <= maxEntries) {
+                    return false;
+                }
+                evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The result of the call, from the cache or run and cached.
+     */
+    public V get(CallKey key, Supplier<? extends V> call) {
+        synchronized (entries) {
+            CachedResult<V> e = entries.get(key);
+            if (e != null) {
+                if (ttlNanos <= 0 || System.nanoTime() - e.time < ttlNanos) {
+                    hits.increment();
+                    return copy(e.value);
+                }
+                entries.remove(key);
+                expirations.increment();
+            }
+        }
+        misses.increment();
+        V v = call.get();
+        CachedResult<V> e = new CachedResult<V>(copy(v), System.nanoTime());
+        synchronized (entries) {
+            entries.put(key, e);
+        }
+        return v;
+    }
+
+    /**
+     * @return Deep copy of the data objects and lists of a result, other values are immutable.
+     */
+    @SuppressWarnings("unchecked")
+    static <V> V copy(V v) {
+        if (v instanceof Object[]) {
+            Object[] a = ((Object[]) v).clone();
+            for (int i = 0; i < a.length; i++) {
+                a[i] = copy(a[i]);
+            }
+            return (V) a;
+        }
+        if (v instanceof ModelData<?> || v instanceof DataList<?>) {
+            return DataUtils.deepCopy(v);
+        }
+        return v;
+    }
+
+    public void invalidate(CallKey key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Number of results evicted as the cache was full.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getExpirations() {
+        return expirations.sum();
+    }
+
+    @Override
+    public String toString() {
+        return name + " size=" + size() + " hits=" + getHits() + " misses=" + getMisses() + " evictions=" + getEvictions()
+                + " expirations=" + getExpirations();
+    }
+}
@@ -0,0 +1,41 @@
+package io.gaultier.modeling.service.support;
+
+/**
+ * Registry of the metrics of the service methods, recorded by the adapters generated with -serviceMetrics.
+ * The adapters get their recorders when loaded, so another registry is to be set before.
+ */
+public abstract class ServiceMetrics {
+
+    /**
+     * Metrics of a method.
+     */
+    public interface Recorder {
+
+        /**
+         * @return Start time of the call.
+         */
+        long start();
+
+        /**
+         * @param start Result of {@link #start()}.
+         * @param elements Number of elements of the returned collection, -1 if not a collection.
+         * @param failed True if the call threw.
+         */
+        void end(long start, int elements, boolean failed);
+    }
+
+    private static volatile ServiceMetrics current = new InMemoryServiceMetrics();
+
+    public static ServiceMetrics get() {
+        return current;
+    }
+
+    public static void set(ServiceMetrics m) {
+        current = m;
+    }
+
+    /**
+     * @param method Name of the method, like UserService.getUser.
+     */
+    public abstract Recorder getRecorder(String method);
+}
@@ -0,0 +1,199 @@
+package io.gaultier.modeling.service.support;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import io.gaultier.modeling.util.base.WrappedException;
+
+/**
+ * Concurrent calls of a service method by {@link CallKey}, generated in its adapter for a {@link CoalesceCalls} method.
+ * The first call of a key runs, the calls with the same key arriving while it runs wait for its result or failure.
+ * Results are not frozen: when calls waited, each call, the running one included, gets its own deep copy of the data objects
+ * and lists of the result, otherwise the running call gets the result itself.
+ * Nothing is kept once the execution ends, see {@link ResponseCache} for that.
+ */
+public final class SingleFlight<V> {
+
+    /**
+     * Call that waited longer than the timeout for the execution it shares.
+     */
+    public static final class CallTimeoutException extends RuntimeException {
+
+        private static final long serialVersionUID = -2717401873418562107L;
+
+        CallTimeoutException(String msg) {
+            super(msg);
+        }
+    }
+
+    /**
+     * Execution of a call, that calls join until it ends.
+     */
+    private static final class Flight<V> {
+
+        final CompletableFuture<V> result = new CompletableFuture<V>();
+        private final AtomicInteger joined = new AtomicInteger();
+
+        /**
+         * @return False if the execution already ended.
+         */
+        boolean join() {
+            for (;;) {
+                int j = joined.get();
+                if (j < 0) {
+                    return false;
+                }
+                if (joined.compareAndSet(j, j + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * @return True if calls joined the execution.
+         */
+        boolean end() {
+            return joined.getAndSet(-1) > 0;
+        }
+    }
+
+    private final String name;
+    private final long timeoutMillis;
+    private final ConcurrentHashMap<CallKey, Flight<V>> running = new ConcurrentHashMap<CallKey, Flight<V>>();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger maxWaiting = new AtomicInteger();
+
+    /**
+     * @param n Name, for the counters.
+     * @param t Time a call waits for a shared execution, 0 for no limit.
+     */
+    public SingleFlight(String n, long t) {
+        name = n;
+        timeoutMillis = t;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The result of the call, run by this thread or by the one running the call with an equal key.
+     * @throws CallTimeoutException If the shared execution does not end in time.
+     */
+    public V get(CallKey key, Supplier<? extends V> call) {
+        calls.increment();
+        for (;;) {
+            Flight<V> f = new Flight<V>();
+            Flight<V> shared = running.putIfAbsent(key, f);
+            if (shared == null) {
+                return run(key, f, call);
+            }
+            if (shared.join()) {
+                return await(key, shared.result);
+            }
+            // Ended while joining, run again
+        }
+    }
+
+    private V run(CallKey key, Flight<V> f, Supplier<? extends V> call) {
+        executions.increment();
+        V v;
+        try {
+            v = call.get();
+        }
+        catch (RuntimeException e) {
+            running.remove(key, f);
+            f.end();
+            f.result.completeExceptionally(e);
+            throw e;
+        }
+        catch (Error e) {
+            running.remove(key, f);
+            f.end();
+            f.result.completeExceptionally(e);
+            throw e;
+        }
+        running.remove(key, f);
+        boolean shared = f.end();
+        f.result.complete(v);
+        // The waiting calls copy the result, which must not change meanwhile
+        return shared ? ResponseCache.copy(v) : v;
+    }
+
+    private V await(CallKey key, CompletableFuture<V> shared) {
+        int w = waiting.incrementAndGet();
+        for (int m = maxWaiting.get(); w > m && !maxWaiting.compareAndSet(m, w); m = maxWaiting.get()) {
+            // Retry
+        }
+        try {
+            return ResponseCache.copy(timeoutMillis > 0 ? shared.get(timeoutMillis, TimeUnit.MILLISECONDS) : shared.get());
+        }
+        catch (ExecutionException e) {
+            WrappedException.throwIt(e.getCause());
+            return null;
+        }
+        catch (TimeoutException e) {
+            timeouts.increment();
+            throw new CallTimeoutException(name + " " + key + " not done in " + timeoutMillis + " ms");
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WrappedException(e);
+        }
+        finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    /**
+     * @return Number of calls run, the others shared an execution.
+     */
+    public long getExecutions() {
+        return executions.sum();
+    }
+
+    public long getCoalesced() {
+        return getCalls() - getExecutions();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * @return Number of executions running now.
+     */
+    public int getRunning() {
+        return running.size();
+    }
+
+    /**
+     * @return Number of calls waiting now for an execution.
+     */
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    public int getMaxWaiting() {
+        return maxWaiting.get();
+    }
+
+    @Override
+    public String toString() {
+        return name + " calls=" + getCalls() + " executions=" + getExecutions() + " timeouts=" + getTimeouts() + " running=" + getRunning()
+                + " waiting=" + getWaiting() + " maxWaiting=" + getMaxWaiting();
+    }
+}
@@ -7,6 +7,7 @@ import japa.parser.ast.type.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 public class AstClass {
 
@@ -17,10 +18,11 @@ public class AstClass {
     private CompilationUnit cu;
     private TypeDeclaration td;
     private String name;
+    private boolean lazy;
 
     private int array;
     private final List<AstClass> typeArguments = new ArrayList<AstClass>();
-    private Map<String, String> classes = new HashMap<String, String>();
+    private Map<String, String> classes = new ConcurrentHashMap<String, String>();
     private Set<String> singleImports = new LinkedHashSet<String>();
     private Set<String> onDemandImports = new LinkedHashSet<String>();
     private Set<String> onDemandStaticImports = new LinkedHashSet<String>();
@@ -35,6 +37,25 @@ public class AstClass {
         name = n;
     }
 
+    /**
+     * Class of a source file parsed on first use of its content.
+     * @param n Qualified name of the class of the file.
+     */
+    static AstClass lazy(SourceModel m, File s, String n) {
+        AstClass c = new AstClass(m, n);
+        c.source = s;
+        c.lazy = true;
+        return c;
+    }
+
+    private synchronized void load() {
+        if (lazy) {
+            lazy = false;
+            System.out.println(source);
+            read(model.parse(source));
+        }
+    }
+
     void setArray(int a) {
         array = a;
     }
@@ -133,6 +154,7 @@ public class AstClass {
     }
 
     String resolveClass(String c) {
+        load();
         String r = classes.get(c);
         if (r != null) {
             return r;
@@ -206,6 +228,7 @@ public class AstClass {
     }
 
     Object findConstant(String name) {
+        load();
         for (String i : onDemandStaticImports) {
             AstClass c = model.obtainClass(i);
             for (AstField f : c.getFields()) {
@@ -248,6 +271,7 @@ public class AstClass {
     }
 
     public Collection<AstClassAnnotation> getAnnotations() {
+        load();
         Collection<AstClassAnnotation> res = new ArrayList<AstClassAnnotation>();
         if (td == null || !(td instanceof ClassOrInterfaceDeclaration)) {
             return res;
@@ -259,6 +283,7 @@ public class AstClass {
     }
 
     public Collection<AstField> getFields() {
+        load();
         Collection<AstField> res = new ArrayList<AstField>();
         System.out.println("getFields " + td + " " + getQualifiedName());
         if (td == null) {
@@ -280,6 +305,7 @@ public class AstClass {
     }
 
     public Collection<AstMethod> getMethods() {
+        load();
         Collection<AstMethod> res = new ArrayList<AstMethod>();
         if (td == null) {
             return res;
@@ -331,6 +357,7 @@ public class AstClass {
         if (array != 0) {
             return false;
         }
+        load();
         if (td != null) {
             if (td instanceof EnumDeclaration) {
                 return true;
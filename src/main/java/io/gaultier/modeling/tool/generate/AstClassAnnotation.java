@@ -31,10 +31,16 @@ public class AstClassAnnotation extends AstAnnotation {
         if (values != null) {
             return values;
         }
-        CompiledClass acl = cl.model.getCompiledClass(getQualifiedName());
-        values = acl.getAnnotationDefaultValues();
-        readValues(values);
-        return values;
+        GenerationProfile.Timer t = cl.model.getProfile().startInput();
+        try {
+            CompiledClass acl = cl.model.getCompiledClass(getQualifiedName());
+            values = acl.getAnnotationDefaultValues();
+            readValues(values);
+            return values;
+        }
+        finally {
+            cl.model.getProfile().input("annotations", cl.getQualifiedName(), t);
+        }
     }
 
     public Collection<AstClassAnnotation> getAnnotations(String name) {
@@ -93,6 +99,10 @@ public class AstClassAnnotation extends AstAnnotation {
         }
         if (ex instanceof ClassExpr) {
             String c = getBaseClass().resolveClass(AstClass.getName(((ClassExpr) ex).type));
+            if (c != null && getBaseClass().model.getClass(c) == null) {
+                // Compiled class, like an enum
+                return getBaseClass().model.obtainClass(c);
+            }
             return getBaseClass().model.getClass(/*c == null ? Object.class.getName() : */c);
             //TO-DO not found:
             //TO-DO Uniquement pour instanceof
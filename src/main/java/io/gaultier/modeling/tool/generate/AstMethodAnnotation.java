@@ -17,7 +17,8 @@ public class AstMethodAnnotation extends AstAnnotation {
 
     @Override
     public String getQualifiedName() {
-        return getNormalName();
+        String n = getNormalName();
+        return n.indexOf('.') >= 0 ? n : met.getClassAssociated().resolveClass(n);
     }
 
     private String parseExpression(Expression expr) {
@@ -59,9 +60,17 @@ public class AstMethodAnnotation extends AstAnnotation {
         if (values != null) {
             return values;
         }
-        values = new HashMap<String, Object>();
-        readValues(values);
-        return values;
+        AstClass c = met.getClassAssociated();
+        GenerationProfile.Timer t = c.model.getProfile().startInput();
+        try {
+            String n = getQualifiedName();
+            values = n == null ? new HashMap<String, Object>() : c.model.getCompiledClass(n).getAnnotationDefaultValues();
+            readValues(values);
+            return values;
+        }
+        finally {
+            c.model.getProfile().input("annotations", c.getQualifiedName() + "." + met.getName(), t);
+        }
     }
 
     @Override
@@ -5,12 +5,12 @@ import java.util.*;
 
 public class CompiledClass {
 
-    //private final SourceModel model;
+    private final SourceModel model;
     private Class<?> real;
     private String name;
 
     CompiledClass(SourceModel m, String n) {
-        //model = m;
+        model = m;
         name = n;
     }
 
@@ -18,6 +18,7 @@ public class CompiledClass {
         if (real != null) {
             return;
         }
+        GenerationProfile.Timer t = model.getProfile().startInput();
         try {
             real = Class.forName(name);
         } catch (ClassNotFoundException e) {
@@ -25,6 +26,7 @@ public class CompiledClass {
         } catch (NoClassDefFoundError e) {
             // Not found
         }
+        model.getProfile().input("annotations", name, t);
     }
 
     boolean exists() {
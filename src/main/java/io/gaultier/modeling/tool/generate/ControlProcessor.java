@@ -2,15 +2,19 @@ package io.gaultier.modeling.tool.generate;
 
 import java.util.*;
 
+import io.gaultier.modeling.service.support.*;
+
 public class ControlProcessor {
 
+    private static final String ACTION = "action";
+
     private final SourceModel model;
 
     ControlProcessor(SourceModel m) {
         model = m;
     }
 
-    void process() {
+    private Map<String, AstClass> getControls() {
         Map<String, AstClass> ctrls = new TreeMap<String, AstClass>();
         for (AstClass c : model.getParsedClasses()) {
             if (!c.getFullName().endsWith("Control")) {
@@ -18,15 +22,135 @@ public class ControlProcessor {
             }
             ctrls.put(c.getFullName(), c);
         }
+        return ctrls;
+    }
 
-        for (AstClass c : ctrls.values()) {
+    void process() {
+        for (AstClass c : getControls().values()) {
             System.out.println(c.getFullName());
             for (AstMethod m : c.getMethods()) {
-                if (!m.getName().startsWith("action")) {
+                if (!m.getName().startsWith(ACTION)) {
                     continue;
                 }
                 System.out.println("\t" + m.getName());
             }
         }
     }
+
+    /**
+     * Write the ControlDispatcher of each control class.
+     */
+    void writeDispatchers() {
+        for (final AstClass c : getControls().values()) {
+            if (!model.isRegenerated(c)) {
+                continue;
+            }
+            model.generate(c.getSource(), false, ServiceProcessor.getDependencies(c), new Runnable() {
+                @Override
+                public void run() {
+                    writeDispatcher(c);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return Name of the action of a method, null if not an action.
+     */
+    private static String getAction(AstMethod m) {
+        String n = m.getName();
+        if (!n.startsWith(ACTION) || n.length() == ACTION.length() || m.isStatic() || !m.isPublic()) {
+            return null;
+        }
+        return JavaWriter.toFieldName(n.substring(ACTION.length()));
+    }
+
+    private void writeDispatcher(AstClass c) {
+        String cn = c.getQualifiedName();
+        String name = c.getSimpleName() + "Dispatcher";
+        StringBuilder dw = new StringBuilder();
+        Collection<String> actions = new LinkedHashSet<String>();
+        for (AstMethod m : c.getMethods()) {
+            String a = getAction(m);
+            if (a == null) {
+                continue;
+            }
+            if (!actions.add(a)) {
+                model.warning(cn + "." + m.getName() + " is overloaded, only the first one is dispatched");
+                continue;
+            }
+            String args = "";
+            int i = 0;
+            for (AstVariable p : m.getParameters()) {
+                args += (i == 0 ? "" : ", ") + ServiceProcessor.getBatchArgument(p.getType().getFullName(), i);
+                i++;
+            }
+            dw.append("\t\tcase \"" + a + "\":\n");
+            dw.append("\t\t\t" + ActionDispatcher.class.getName() + ".checkArguments(action, a, " + i + ");\n");
+            if ("void".equals(m.getReturnType().getFullName())) {
+                dw.append("\t\t\tcontrol." + m.getName() + "(" + args + ");\n");
+                dw.append("\t\t\treturn null;\n");
+            }
+            else {
+                dw.append("\t\t\treturn control." + m.getName() + "(" + args + ");\n");
+            }
+        }
+        if (actions.isEmpty()) {
+            model.warning("No actions in " + cn);
+            return;
+        }
+
+        JavaWriter w = new JavaWriter(model, c.getPackageName(), name);
+        w.writeln("package " + c.getPackageName() + ";");
+        w.ln();
+        w.generated();
+        w.writeln("public final class " + name + " implements " + ActionDispatcher.class.getName() + "<" + cn + "> {");
+        w.ln();
+        w.writeln("\tpublic static final " + name + " INSTANCE = new " + name + "();");
+        w.ln();
+        String as = "";
+        for (String a : actions) {
+            as += (as.isEmpty() ? "" : ", ") + "\"" + a + "\"";
+        }
+        w.writeln("\tprivate static final String[] ACTIONS = { " + as + " };");
+        w.ln();
+        w.writeln("\tprivate " + name + "() {");
+        w.writeln("\t}");
+        w.ln();
+        w.writeln("\t@Override");
+        w.writeln("\tpublic Class<" + cn + "> getControlClass() {");
+        w.writeln("\t\treturn " + cn + ".class;");
+        w.writeln("\t}");
+        w.ln();
+        w.writeln("\t@Override");
+        w.writeln("\tpublic String[] getActions() {");
+        w.writeln("\t\treturn ACTIONS.clone();");
+        w.writeln("\t}");
+        w.ln();
+        w.writeln("\t@Override");
+        w.writeln("\tpublic boolean hasAction(String action) {");
+        w.writeln("\t\tswitch (action) {");
+        for (String a : actions) {
+            w.writeln("\t\tcase \"" + a + "\":");
+        }
+        w.writeln("\t\t\treturn true;");
+        w.writeln("\t\tdefault:");
+        w.writeln("\t\t\treturn false;");
+        w.writeln("\t\t}");
+        w.writeln("\t}");
+        w.ln();
+        if (dw.indexOf("<") >= 0) {
+            w.writeln("\t@SuppressWarnings(\"unchecked\")");
+        }
+        w.writeln("\t@Override");
+        w.writeln("\tpublic Object dispatch(" + cn + " control, String action, Object... a) throws Exception {");
+        w.writeln("\t\tswitch (action) {");
+        w.write(dw.toString());
+        w.writeln("\t\tdefault:");
+        w.writeln("\t\t\tthrow new IllegalArgumentException(\"No action \" + action + \" in " + cn + "\");");
+        w.writeln("\t\t}");
+        w.writeln("\t}");
+        w.writeln("}");
+        w.output();
+    }
 }
@@ -0,0 +1,67 @@
+package io.gaultier.modeling.tool.generate;
+
+import java.io.*;
+import java.util.*;
+
+import javax.annotation.processing.*;
+import javax.lang.model.*;
+import javax.lang.model.element.*;
+import javax.tools.*;
+
+import io.gaultier.modeling.model.data.*;
+
+/**
+ * Generation of the data classes during javac, instead of {@link GenerateMain}.
+ * The stubs and the other Java outputs are written through the filer, from the {@link DataClass} annotated classes.
+ * Generator options like -dao or -binaryCodecs are given with -Amodeling.options="-dao -binaryCodecs".
+ * Aggregating for Gradle incremental processing, as the registry lists all the data classes.
+ */
+@SupportedAnnotationTypes("io.gaultier.modeling.model.data.DataClass")
+@SupportedOptions(DataClassProcessor.OPTIONS)
+public class DataClassProcessor extends AbstractProcessor {
+
+    static final String OPTIONS = "modeling.options";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        Set<? extends Element> es = round.getElementsAnnotatedWith(DataClass.class);
+        if (es.isEmpty()) {
+            return false;
+        }
+        Messager messager = processingEnv.getMessager();
+        SourceModel model = new SourceModel();
+        String opts = processingEnv.getOptions().get(OPTIONS);
+        if (opts != null) {
+            for (String o : opts.trim().split("\\s+")) {
+                if (!o.isEmpty() && !model.setOption(o)) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "Unknown " + OPTIONS + " option " + o);
+                    return true;
+                }
+            }
+        }
+        // The filer and the elements are not thread safe
+        model.setOption("-threads=1");
+        model.setFiler(processingEnv.getFiler());
+        for (Element e : es) {
+            if (!(e instanceof TypeElement)) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "Only classes are data classes", e);
+                continue;
+            }
+            model.addElementClass(new ElementClass(model, (TypeElement) e, processingEnv.getElementUtils()));
+        }
+        try {
+            model.process();
+        }
+        catch (RuntimeException e) {
+            StringWriter w = new StringWriter();
+            e.printStackTrace(new PrintWriter(w));
+            messager.printMessage(Diagnostic.Kind.ERROR, "Generation failed: " + w);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,87 @@
+package io.gaultier.modeling.tool.generate;
+
+import japa.parser.ast.expr.*;
+
+import java.util.*;
+
+import javax.lang.model.element.*;
+import javax.lang.model.type.*;
+import javax.lang.model.util.*;
+
+import io.gaultier.modeling.util.base.*;
+
+/**
+ * Annotation of an {@link ElementClass}, its values with defaults read from the annotation mirror.
+ */
+class ElementAnnotation extends AstClassAnnotation {
+
+    private final ElementClass cl;
+    private final AnnotationMirror mirror;
+    private final Elements elements;
+
+    ElementAnnotation(ElementClass c, AnnotationMirror a, Elements u) {
+        super(c, null);
+        cl = c;
+        mirror = a;
+        elements = u;
+    }
+
+    @Override
+    public String getQualifiedName() {
+        return ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString();
+    }
+
+    @Override
+    protected Map<String, Object> getValues() {
+        if (values != null) {
+            return values;
+        }
+        values = new HashMap<String, Object>();
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> e : elements.getElementValuesWithDefaults(mirror).entrySet()) {
+            values.put(e.getKey().getSimpleName().toString(), getValue(e.getValue()));
+        }
+        return values;
+    }
+
+    @Override
+    protected Object getValue(Expression ex) {
+        assert false : ex;
+        return null;
+    }
+
+    private Object getValue(AnnotationValue v) {
+        Object o = v.getValue();
+        if (o instanceof List<?>) {
+            List<Object> res = new ArrayList<Object>();
+            for (Object e : (List<?>) o) {
+                res.add(getValue((AnnotationValue) e));
+            }
+            return res;
+        }
+        if (o instanceof AnnotationMirror) {
+            return new ElementAnnotation(cl, (AnnotationMirror) o, elements);
+        }
+        if (o instanceof TypeMirror) {
+            TypeMirror t = (TypeMirror) o;
+            String n = t.getKind() == TypeKind.DECLARED ? ((TypeElement) ((DeclaredType) t).asElement()).getQualifiedName().toString() : t.toString();
+            return cl.model.obtainClass(n);
+        }
+        if (o instanceof VariableElement) {
+            // Enum constant, of an enum of the annotations like DataType
+            TypeElement e = (TypeElement) ((VariableElement) o).getEnclosingElement();
+            try {
+                Class<?> c = Class.forName(elements.getBinaryName(e).toString());
+                return toEnum(c.asSubclass(Enum.class), ((VariableElement) o).getSimpleName().toString());
+            }
+            catch (ClassNotFoundException ex) {
+                throw new WrappedException(ex);
+            }
+        }
+        return o;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object toEnum(Class<? extends Enum> c, String name) {
+        return Enum.valueOf((Class) c, name);
+    }
+}
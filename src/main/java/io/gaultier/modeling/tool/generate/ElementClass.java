@@ -0,0 +1,39 @@
+package io.gaultier.modeling.tool.generate;
+
+import java.util.*;
+
+import javax.lang.model.element.*;
+import javax.lang.model.util.*;
+
+/**
+ * Class compiled by javac, read from its element instead of its parsed source.
+ */
+class ElementClass extends AstClass {
+
+    private final TypeElement element;
+    private final Elements elements;
+
+    ElementClass(SourceModel m, TypeElement e, Elements u) {
+        super(m, e.getQualifiedName().toString());
+        element = e;
+        elements = u;
+    }
+
+    TypeElement getElement() {
+        return element;
+    }
+
+    @Override
+    public Collection<AstClassAnnotation> getAnnotations() {
+        Collection<AstClassAnnotation> res = new ArrayList<AstClassAnnotation>();
+        for (AnnotationMirror a : element.getAnnotationMirrors()) {
+            res.add(new ElementAnnotation(this, a, elements));
+        }
+        return res;
+    }
+
+    @Override
+    boolean isEnum() {
+        return element.getKind() == ElementKind.ENUM;
+    }
+}
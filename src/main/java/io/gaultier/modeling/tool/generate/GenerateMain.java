@@ -1,33 +1,62 @@
 package io.gaultier.modeling.tool.generate;
 
 import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import io.gaultier.modeling.util.base.*;
 
 public class GenerateMain {
 
+    private static final long DEBOUNCE_MILLIS = 200;
+
     private final SourceModel model = new SourceModel();
+    private final List<Path> roots = new ArrayList<Path>();
+    private boolean watch;
 
     private boolean setOption(String opt) {
         return model.setOption(opt);
     }
 
-    private void loadFiles(File file) {
-        if (file.getName().startsWith(".")) {
-            return;
+    private void loadFiles(Path root, final List<File> res) {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return isHidden(dir) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (isHidden(file)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    System.out.println("processing:" + file.getFileName());
+                    if (model.isSourceFile(file.getFileName().toString())) {
+                        res.add(file.toFile());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
         }
-        if (file.isDirectory()) {
-            for (File child : file.listFiles()) {
-                loadFiles(child);
-            }
-        } else {
-            System.out.println("processing:" + file.getName());
-            if (file.getName().endsWith("Data.java")) {
-                model.loadClass(file);
-            }
+        catch (IOException e) {
+            throw new WrappedException(e);
         }
     }
 
+    private static boolean isHidden(Path p) {
+        Path n = p.getFileName();
+        return n != null && n.toString().startsWith(".");
+    }
+
     private void exec(String... args) {
         for (String a : args) {
+            if (a.equals("-watch")) {
+                watch = true;
+                continue;
+            }
             if (a.startsWith("-")) {
                 if (!setOption(a)) {
                     System.err.println("Invalid option: " + a);
@@ -40,11 +69,120 @@ public class GenerateMain {
             if (a.startsWith("-")) {
                 continue;
             }
-            loadFiles(new File(a));
+            roots.add(Paths.get(a));
         }
+        generate();
+        if (watch) {
+            try {
+                watch();
+            }
+            catch (IOException e) {
+                throw new WrappedException(e);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void generate() {
+        GenerationProfile profile = model.getProfile();
+        GenerationProfile.Timer t = profile.start();
+        List<File> files = loadFiles();
+        profile.phase("scan", t);
+        t = profile.start();
+        model.loadClasses(files);
+        profile.phase("parse", t);
         model.process();
     }
 
+    private List<File> loadFiles() {
+        List<File> files = new ArrayList<File>();
+        for (Path r : roots) {
+            loadFiles(r, files);
+        }
+        return files;
+    }
+
+    /**
+     * Generate again after each burst of changes of the sources, until interrupted.
+     * Only the changed sources and the ones referencing them are parsed again.
+     */
+    private void watch() throws IOException, InterruptedException {
+        WatchService ws = FileSystems.getDefault().newWatchService();
+        Map<WatchKey, Path> dirs = new HashMap<WatchKey, Path>();
+        for (Path r : roots) {
+            if (Files.isDirectory(r)) {
+                register(ws, r, dirs);
+            }
+        }
+        System.out.println("Watching " + roots);
+        for (;;) {
+            WatchKey k = ws.take();
+            boolean changed = false;
+            while (k != null) {
+                changed |= readEvents(ws, k, dirs);
+                k = ws.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            if (!changed) {
+                continue;
+            }
+            long start = System.currentTimeMillis();
+            try {
+                model.reset();
+                generate();
+                System.out.println("Generated in " + (System.currentTimeMillis() - start) + " ms");
+            }
+            catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private boolean readEvents(WatchService ws, WatchKey k, Map<WatchKey, Path> dirs) throws IOException {
+        boolean changed = false;
+        Path dir = dirs.get(k);
+        for (WatchEvent<?> e : k.pollEvents()) {
+            if (e.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                changed = true;
+                continue;
+            }
+            Path p = dir.resolve((Path) e.context());
+            if (isHidden(p)) {
+                continue;
+            }
+            if (e.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(p)) {
+                register(ws, p, dirs);
+                changed = true;
+            }
+            else if (model.isSourceFile(p.getFileName().toString())) {
+                changed = true;
+            }
+            else if (e.kind() == StandardWatchEventKinds.ENTRY_DELETE && !p.getFileName().toString().contains(".")) {
+                // Maybe a directory of sources
+                changed = true;
+            }
+        }
+        if (!k.reset()) {
+            dirs.remove(k);
+        }
+        return changed;
+    }
+
+    private void register(final WatchService ws, Path root, final Map<WatchKey, Path> dirs) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (isHidden(dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                dirs.put(dir.register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                        StandardWatchEventKinds.ENTRY_MODIFY), dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
     public static void main(String... args) {
         new GenerateMain().exec(args);
     }
@@ -0,0 +1,382 @@
+package io.gaultier.modeling.tool.generate;
+
+import java.io.*;
+import java.net.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.regex.*;
+
+import io.gaultier.modeling.util.base.*;
+
+/**
+ * State of the previous generation: hash, class, references and outputs of each source file,
+ * and hash of the referenced classes that are not sources, like enums.
+ * Sources are parsed and their classes written again only when they or one of the classes
+ * they reference changed, and all of them when the generator changed.
+ */
+class GenerationCache {
+
+    static final String FILE_NAME = ".generate-cache";
+    private static final String HEADER = "#generate-cache 2 ";
+    private static final String REFERENCE = "@";
+    private static String generator;
+
+    static final class Entry {
+        final String path;
+        long length;
+        long modified;
+        String hash;
+        String className;
+        boolean data;
+        final Set<String> dependencies = new TreeSet<String>();
+        final List<String> outputs = new ArrayList<String>();
+        boolean changed;
+        boolean regenerate;
+
+        Entry(String p) {
+            path = p;
+        }
+    }
+
+    private final File file;
+    private final String options;
+    private final Map<String, Entry> previous = new HashMap<String, Entry>();
+    private final Map<String, Entry> current = new TreeMap<String, Entry>();
+    private final Map<String, String> previousReferences = new HashMap<String, String>();
+    private final Map<String, String> hashes = new HashMap<String, String>();
+
+    /**
+     * @param f Cache file.
+     * @param opts Options the outputs depend on.
+     */
+    GenerationCache(File f, String opts) {
+        file = f;
+        options = opts;
+    }
+
+    private String getHeader() {
+        return HEADER + getGenerator() + ' ' + options;
+    }
+
+    /**
+     * @return Fingerprint of the classes of the generator: size and date of its jar, or latest date of its class files.
+     */
+    private static synchronized String getGenerator() {
+        if (generator == null) {
+            long length = 0;
+            long modified = 0;
+            try {
+                File f = new File(GenerationCache.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+                if (f.isFile()) {
+                    length = f.length();
+                    modified = f.lastModified();
+                }
+                else {
+                    for (File c : FileUtils.traverse(new File(f, GenerationCache.class.getPackage().getName().replace('.', '/')))) {
+                        length++;
+                        modified = Math.max(modified, c.lastModified());
+                    }
+                }
+            }
+            catch (URISyntaxException e) {
+                throw new WrappedException(e);
+            }
+            catch (RuntimeException e) {
+                // No code source: changes of the generator are not detected
+            }
+            generator = length + ":" + modified;
+        }
+        return generator;
+    }
+
+    /**
+     * Read the previous state, ignored if it was made with other options, by another generator, or is unreadable.
+     */
+    void load() {
+        previous.clear();
+        previousReferences.clear();
+        if (!file.isFile()) {
+            return;
+        }
+        try {
+            BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(file), FileUtils.UTF_8));
+            try {
+                if (!getHeader().equals(r.readLine())) {
+                    return;
+                }
+                for (String l = r.readLine(); l != null; l = r.readLine()) {
+                    String[] t = l.split("\t", -1);
+                    if (t[0].startsWith(REFERENCE)) {
+                        previousReferences.put(t[0].substring(REFERENCE.length()), t[1]);
+                        continue;
+                    }
+                    Entry e = new Entry(t[0]);
+                    e.length = Long.parseLong(t[1]);
+                    e.modified = Long.parseLong(t[2]);
+                    e.hash = t[3];
+                    e.className = t[4].isEmpty() ? null : t[4];
+                    e.data = "1".equals(t[5]);
+                    e.dependencies.addAll(split(t[6], ","));
+                    e.outputs.addAll(split(t[7], File.pathSeparator));
+                    previous.put(e.path, e);
+                }
+            }
+            finally {
+                r.close();
+            }
+        }
+        catch (IOException e) {
+            previous.clear();
+            previousReferences.clear();
+        }
+        catch (RuntimeException e) {
+            previous.clear();
+            previousReferences.clear();
+        }
+    }
+
+    /**
+     * Make the current state the previous one, for a new generation in the same process.
+     */
+    GenerationCache next() {
+        previous.clear();
+        previous.putAll(current);
+        previousReferences.clear();
+        previousReferences.putAll(getReferences());
+        current.clear();
+        return this;
+    }
+
+    /**
+     * Write the current state, to be the previous one of the next generation.
+     */
+    void save() {
+        StringBuilder b = new StringBuilder();
+        b.append(getHeader()).append('\n');
+        for (Entry e : current.values()) {
+            b.append(e.path).append('\t').append(e.length).append('\t').append(e.modified).append('\t');
+            b.append(e.hash).append('\t').append(e.className == null ? "" : e.className).append('\t');
+            b.append(e.data ? '1' : '0').append('\t');
+            join(b, e.dependencies, ",").append('\t');
+            join(b, e.outputs, File.pathSeparator).append('\n');
+        }
+        for (Map.Entry<String, String> r : getReferences().entrySet()) {
+            b.append(REFERENCE).append(r.getKey()).append('\t').append(r.getValue()).append('\n');
+        }
+        try {
+            FileUtils.writeTo(new ByteBufferStream(FileUtils.stringToBytes(b.toString(), FileUtils.UTF_8)), file);
+        }
+        catch (IOException e) {
+            throw new WrappedException(e);
+        }
+    }
+
+    /**
+     * Compare the sources to the previous state.
+     * @return The sources to parse: changed ones, and the ones referencing a class of a changed or removed one.
+     */
+    List<File> update(List<File> sources) {
+        current.clear();
+        hashes.clear();
+        Set<String> changed = new HashSet<String>();
+        for (File f : sources) {
+            Entry e = scan(f);
+            current.put(e.path, e);
+            Entry p = previous.get(e.path);
+            if (e.regenerate && p != null && p.className != null) {
+                changed.add(p.className);
+            }
+        }
+        for (Entry p : previous.values()) {
+            if (!current.containsKey(p.path) && p.className != null) {
+                changed.add(p.className);
+            }
+        }
+        for (Map.Entry<String, String> r : previousReferences.entrySet()) {
+            if (!r.getValue().equals(hash(r.getKey()))) {
+                changed.add(r.getKey());
+            }
+        }
+        markDependents(changed);
+        List<File> res = new ArrayList<File>();
+        for (Entry e : current.values()) {
+            if (e.regenerate) {
+                res.add(new File(e.path));
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Mark the unchanged sources referencing the classes.
+     * @return The newly marked sources.
+     */
+    List<File> markDependents(Collection<String> classes) {
+        List<File> res = new ArrayList<File>();
+        for (Entry e : current.values()) {
+            if (e.regenerate) {
+                continue;
+            }
+            for (String d : e.dependencies) {
+                if (classes.contains(d)) {
+                    e.regenerate = true;
+                    res.add(new File(e.path));
+                    break;
+                }
+            }
+        }
+        return res;
+    }
+
+    private Entry scan(File f) {
+        String path = f.getAbsolutePath();
+        Entry p = previous.get(path);
+        Entry e = new Entry(path);
+        e.length = f.length();
+        e.modified = f.lastModified();
+        if (p != null && p.length == e.length && p.modified == e.modified) {
+            e.hash = p.hash;
+        }
+        else {
+            try {
+                e.hash = FileUtils.sha1(Files.readAllBytes(f.toPath())).toHexRepresentation(false);
+            }
+            catch (IOException ex) {
+                throw new WrappedException(ex);
+            }
+        }
+        if (p == null || !p.hash.equals(e.hash) || !outputsExist(p)) {
+            e.changed = true;
+            e.regenerate = true;
+            return e;
+        }
+        e.className = p.className;
+        e.data = p.data;
+        e.dependencies.addAll(p.dependencies);
+        e.outputs.addAll(p.outputs);
+        return e;
+    }
+
+    /**
+     * @return Hash of the referenced classes that are not sources.
+     */
+    private Map<String, String> getReferences() {
+        Set<String> classes = new HashSet<String>();
+        for (Entry e : current.values()) {
+            classes.add(e.className);
+        }
+        Map<String, String> res = new TreeMap<String, String>();
+        for (Entry e : current.values()) {
+            for (String d : e.dependencies) {
+                if (!classes.contains(d) && !res.containsKey(d)) {
+                    res.put(d, hash(d));
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * @return Hash of the source file of a class found beside the sources, or else of its class file, empty if none.
+     */
+    private String hash(String className) {
+        String h = hashes.get(className);
+        if (h != null) {
+            return h;
+        }
+        h = "";
+        try {
+            File f = findSource(className);
+            if (f != null) {
+                h = FileUtils.sha1(Files.readAllBytes(f.toPath())).toHexRepresentation(false);
+            }
+            else {
+                URL u = GenerationCache.class.getClassLoader().getResource(className.replace('.', '/') + ".class");
+                if (u != null) {
+                    InputStream is = u.openStream();
+                    try {
+                        ByteArrayOutputStream os = new ByteArrayOutputStream();
+                        FileUtils.readFully(is, os);
+                        h = FileUtils.sha1(os.toByteArray()).toHexRepresentation(false);
+                    }
+                    finally {
+                        is.close();
+                    }
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new WrappedException(e);
+        }
+        hashes.put(className, h);
+        return h;
+    }
+
+    /**
+     * @return The file of a class in the source root of one of the sources, null if none.
+     */
+    private File findSource(String className) {
+        String path = className.replace('.', File.separatorChar) + ".java";
+        Set<String> roots = new HashSet<String>();
+        List<Entry> entries = new ArrayList<Entry>(current.values());
+        entries.addAll(previous.values());
+        for (Entry e : entries) {
+            if (e.className == null) {
+                continue;
+            }
+            String p = e.className.replace('.', File.separatorChar) + ".java";
+            if (e.path.endsWith(File.separator + p) && roots.add(e.path.substring(0, e.path.length() - p.length()))) {
+                File f = new File(e.path.substring(0, e.path.length() - p.length()) + path);
+                if (f.isFile()) {
+                    return f;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean outputsExist(Entry e) {
+        for (String o : e.outputs) {
+            if (!new File(o).isFile()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    Entry get(File source) {
+        return current.get(source.getAbsolutePath());
+    }
+
+    /**
+     * @return Qualified names of all the data classes.
+     */
+    SortedSet<String> getDataClasses() {
+        SortedSet<String> res = new TreeSet<String>();
+        for (Entry e : current.values()) {
+            if (e.data) {
+                res.add(e.className);
+            }
+        }
+        return res;
+    }
+
+    private static List<String> split(String s, String sep) {
+        if (s.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(s.split(Pattern.quote(sep)));
+    }
+
+    private static StringBuilder join(StringBuilder b, Collection<String> c, String sep) {
+        boolean first = true;
+        for (String s : c) {
+            if (!first) {
+                b.append(sep);
+            }
+            b.append(s);
+            first = false;
+        }
+        return b;
+    }
+}
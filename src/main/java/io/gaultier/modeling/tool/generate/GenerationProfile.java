@@ -0,0 +1,272 @@
+package io.gaultier.modeling.tool.generate;
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+
+import org.json.*;
+
+import io.gaultier.modeling.util.base.*;
+
+/**
+ * Wall time, CPU time and allocation of the phases of a generation and of each of their inputs, with -profile.
+ * An input measured on a pool thread is added to the phase of the same name, whose own measure is of the calling thread.
+ * The measure of an input excludes the inputs measured inside it, like a referenced class modeled while modeling another,
+ * or the annotations resolved while modeling a class: those are totaled apart, see {@link #total(String)}.
+ */
+class GenerationProfile {
+
+    private static final int SLOWEST = 10;
+
+    /**
+     * Measure started on the current thread, paused while an input is measured inside it.
+     */
+    final class Timer {
+
+        private final long thread = Thread.currentThread().getId();
+        private final Timer outer;
+        private long wall;
+        private long cpu;
+        private long alloc;
+        private long wallStart;
+        private long cpuStart;
+        private long allocStart;
+
+        Timer(Timer o) {
+            outer = o;
+            resume();
+        }
+
+        private void resume() {
+            wallStart = System.nanoTime();
+            cpuStart = cpuTime();
+            allocStart = allocatedBytes();
+        }
+
+        private void pause() {
+            wall += System.nanoTime() - wallStart;
+            cpu = cpuStart < 0 ? -1 : cpu + cpuTime() - cpuStart;
+            alloc = allocStart < 0 ? -1 : alloc + allocatedBytes() - allocStart;
+        }
+
+        private Sample stop(String kind, String name) {
+            pause();
+            Sample s = new Sample(kind, name, thread);
+            s.wall = wall;
+            s.cpu = cpu;
+            s.alloc = alloc;
+            return s;
+        }
+    }
+
+    private static final class Sample {
+
+        final String kind;
+        final String name;
+        final long thread;
+        long wall;
+        long cpu;
+        long alloc;
+        int count;
+        boolean nested;
+
+        Sample(String k, String n, long t) {
+            kind = k;
+            name = n;
+            thread = t;
+        }
+
+        void add(Sample s) {
+            cpu = cpu < 0 || s.cpu < 0 ? -1 : cpu + s.cpu;
+            alloc = alloc < 0 || s.alloc < 0 ? -1 : alloc + s.alloc;
+        }
+
+        JSONObject toJson() {
+            JSONObject o = new JSONObject();
+            o.put("name", name);
+            o.put("wallMs", millis(wall));
+            o.put("cpuMs", cpu < 0 ? null : millis(cpu));
+            o.put("allocBytes", alloc < 0 ? null : alloc);
+            if (nested) {
+                o.put("nested", true);
+            }
+            return o;
+        }
+    }
+
+    private final boolean enabled;
+    private final File output;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final List<Sample> phases = new ArrayList<Sample>();
+    private final List<Sample> inputs = new ArrayList<Sample>();
+    private final ThreadLocal<Timer> current = new ThreadLocal<Timer>();
+
+    /**
+     * @param e False for a profile measuring nothing.
+     * @param f File of the JSON summary.
+     */
+    GenerationProfile(boolean e, File f) {
+        enabled = e;
+        output = f;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return A measure of a phase on the current thread, null if disabled.
+     */
+    Timer start() {
+        return enabled ? new Timer(null) : null;
+    }
+
+    /**
+     * @return A measure of an input on the current thread, pausing the one of the input it is inside, null if disabled.
+     */
+    Timer startInput() {
+        if (!enabled) {
+            return null;
+        }
+        Timer outer = current.get();
+        if (outer != null) {
+            outer.pause();
+        }
+        Timer t = new Timer(outer);
+        current.set(t);
+        return t;
+    }
+
+    /**
+     * Record a phase, with the inputs of the same kind measured on other threads.
+     */
+    void phase(String name, Timer t) {
+        if (t == null) {
+            return;
+        }
+        Sample s = t.stop(name, name);
+        synchronized (this) {
+            for (Sample i : inputs) {
+                if (i.kind.equals(name)) {
+                    s.count++;
+                    if (i.thread != s.thread) {
+                        s.add(i);
+                    }
+                }
+            }
+            phases.add(s);
+        }
+    }
+
+    /**
+     * Record the processing of an input of a phase, like the parsing of a file, and resume the input it is inside.
+     * @param t Measure of {@link #startInput()}.
+     */
+    void input(String kind, String name, Timer t) {
+        if (t == null) {
+            return;
+        }
+        Sample s = t.stop(kind, name);
+        current.set(t.outer);
+        if (t.outer != null) {
+            t.outer.resume();
+        }
+        synchronized (this) {
+            inputs.add(s);
+        }
+    }
+
+    /**
+     * Record the total of the inputs of a kind measured inside the inputs of the phases, reported as nested in them.
+     */
+    synchronized void total(String kind) {
+        if (!enabled) {
+            return;
+        }
+        Sample s = new Sample(kind, kind, -1);
+        s.nested = true;
+        for (Sample i : inputs) {
+            if (i.kind.equals(kind)) {
+                s.count++;
+                s.wall += i.wall;
+                s.add(i);
+            }
+        }
+        phases.add(s);
+    }
+
+    private long cpuTime() {
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : -1;
+    }
+
+    private long allocatedBytes() {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1e5) / 10.;
+    }
+
+    private static String format(Sample s) {
+        return String.format("%10.1f ms %10s ms %12s KB", millis(s.wall), s.cpu < 0 ? "?" : String.valueOf(millis(s.cpu)),
+                s.alloc < 0 ? "?" : String.valueOf(s.alloc / 1024));
+    }
+
+    private synchronized List<Sample> getSlowest() {
+        List<Sample> res = new ArrayList<Sample>(inputs);
+        Collections.sort(res, new Comparator<Sample>() {
+            @Override
+            public int compare(Sample a, Sample b) {
+                return Long.compare(b.wall, a.wall);
+            }
+        });
+        return res;
+    }
+
+    /**
+     * Print the phases and the slowest inputs, write the JSON summary, and start again.
+     */
+    synchronized void report() {
+        if (!enabled) {
+            return;
+        }
+        List<Sample> slowest = getSlowest();
+        System.out.println("Profile (wall, cpu, allocated):");
+        for (Sample s : phases) {
+            System.out.println(String.format("  %-12s", s.name) + format(s) + (s.count == 0 ? "" : "  " + s.count + " inputs")
+                    + (s.nested ? ", inside the other phases" : ""));
+        }
+        System.out.println("Slowest inputs:");
+        for (Sample s : slowest.subList(0, Math.min(SLOWEST, slowest.size()))) {
+            System.out.println(String.format("  %-12s", s.kind) + format(s) + "  " + s.name);
+        }
+        write(slowest);
+        phases.clear();
+        inputs.clear();
+    }
+
+    private void write(List<Sample> slowest) {
+        JSONObject o = new JSONObject();
+        o.put("time", System.currentTimeMillis());
+        o.put("processors", Runtime.getRuntime().availableProcessors());
+        JSONArray ps = new JSONArray();
+        for (Sample s : phases) {
+            ps.put(s.toJson().put("inputs", s.count));
+        }
+        o.put("phases", ps);
+        JSONArray is = new JSONArray();
+        for (Sample s : slowest) {
+            is.put(s.toJson().put("kind", s.kind));
+        }
+        o.put("inputs", is);
+        try {
+            FileUtils.writeTo(new ByteBufferStream(FileUtils.stringToBytes(o.toString(2), FileUtils.UTF_8)), output);
+        }
+        catch (IOException e) {
+            throw new WrappedException(e);
+        }
+    }
+}
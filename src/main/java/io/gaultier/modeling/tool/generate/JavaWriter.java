@@ -1,6 +1,8 @@
 package io.gaultier.modeling.tool.generate;
 
 import java.io.*;
+import java.nio.file.*;
+import java.util.*;
 
 import io.gaultier.modeling.util.base.*;
 
@@ -17,6 +19,8 @@ public class JavaWriter {
     static final String FIELD_DEFINITION = "io.gaultier.modeling.model.data.FieldDefinition";
     static final String FIELD_TYPE = "io.gaultier.modeling.model.data.FieldType";
     static final String MODEL_DATA = "io.gaultier.modeling.model.data.ModelData";
+    static final String AMF_ENUM_TABLE = "io.gaultier.modeling.model.data.enumtype.AmfEnumTable";
+    static final String BYTE_BUFFER_STREAM = "io.gaultier.modeling.util.base.ByteBufferStream";
     static final String JOIN_DEFINITION = "io.gaultier.modeling.model.db.JoinDefinition";
     static final String STATEMENT_LOCATION = "io.gaultier.modeling.model.db.StatementLocation";
 
@@ -69,12 +73,20 @@ public class JavaWriter {
     }
 
     void output() {
+        if (model.hasFiler()) {
+            model.writeSource(packageName.isEmpty() ? className : packageName + "." + className, head.toString() + body.toString());
+            return;
+        }
         File f = makeFileName();
         //System.out.println("Out: " + f);
-        f.delete();
+        byte[] content = FileUtils.stringToBytes(head.toString() + body.toString(), FileUtils.UTF_8);
         try {
+            // Unchanged files are not touched, to keep the downstream builds incremental
+            if (f.isFile() && f.length() == content.length && Arrays.equals(Files.readAllBytes(f.toPath()), content)) {
+                return;
+            }
             FileOutputStream fos = new FileOutputStream(f);
-            fos.write(FileUtils.stringToBytes(head.toString() + body.toString(), FileUtils.UTF_8));
+            fos.write(content);
             fos.close();
         }
         catch (IOException e) {
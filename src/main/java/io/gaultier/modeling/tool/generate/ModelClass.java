@@ -1,6 +1,7 @@
 package io.gaultier.modeling.tool.generate;
 
 import java.io.*;
+import java.sql.*;
 import java.util.*;
 
 import io.gaultier.modeling.model.data.*;
@@ -8,6 +9,7 @@ import io.gaultier.modeling.model.data.*;
 public class ModelClass implements Comparable<ModelClass> {
 
     private static final String SUFFIX = "Data";
+    static final String DEFINITION_CONSTANT = "DEFINITION";
 
     ModelProcessor proc;
     private String packageName;
@@ -19,6 +21,7 @@ public class ModelClass implements Comparable<ModelClass> {
     private boolean json;
     private boolean local;
     private String location;
+    private File source;
 
     public ModelClass parse(ModelProcessor p, AstClass c, AstClassAnnotation a) {
 		String name = c.getSimpleName();
@@ -27,6 +30,7 @@ public class ModelClass implements Comparable<ModelClass> {
             return null;
         }
         this.proc = p;
+        this.source = c.getSource();
         this.packageName = c.getPackageName();
         this.dataName = name;
         this.baseName = name.substring(0, name.length() - SUFFIX.length());
@@ -76,6 +80,22 @@ public class ModelClass implements Comparable<ModelClass> {
         return isAmf(); //TODO Ipad
     }
 
+    File getSource() {
+        return source;
+    }
+
+    /**
+     * @return Qualified names of the classes referenced by the fields.
+     */
+    Set<String> getDependencies() {
+        Set<String> res = new TreeSet<String>();
+        for (ModelField f : fields) {
+            res.addAll(f.getReferences());
+        }
+        res.remove(getQualifiedName());
+        return res;
+    }
+
     Collection<ModelField> getFields() {
         return fields;
     }
@@ -140,6 +160,14 @@ public class ModelClass implements Comparable<ModelClass> {
         return getDaoPackage();
     }
 
+    private String getBinaryCodecName() {
+        return baseName + "BinaryCodec";
+    }
+
+    String getBinaryCodecQualifiedName() {
+        return packageName + "." + getBinaryCodecName();
+    }
+
     String getFlexStubName() {
         return baseName + "Data";
     }
@@ -202,7 +230,7 @@ public class ModelClass implements Comparable<ModelClass> {
     }
 
     String getDefinitionConstant() {
-        return "DEFINITION";
+        return DEFINITION_CONSTANT;
     }
 
     void write() {
@@ -216,6 +244,9 @@ public class ModelClass implements Comparable<ModelClass> {
 //        if (!isLocal()) { 
 //            w.write(" implements " + Externalizable.class.getName());
 //        }
+        if (isExternalizable()) {
+            w.write(" implements " + Externalizable.class.getName());
+        }
         w.writeln(" {");
         //System.out.println(getStubName());
         writeDef(w);
@@ -242,6 +273,9 @@ public class ModelClass implements Comparable<ModelClass> {
         for (ModelField f : fields) {
         	f.writeAccessorsOld(w);
         }
+        if (isExternalizable()) {
+            writeExternalizable(w);
+        }
         //writeSerialize(w);
         //writeToString(w);
 
@@ -253,6 +287,7 @@ public class ModelClass implements Comparable<ModelClass> {
         w.writeln("public static final " + JavaWriter.DATA_DEFINITION + "<" + getQualifiedName() + "> " + getDefinitionConstant() +
                 " = " + JavaWriter.DATA_DEFINITION + ".create(" +
                 getQualifiedName() + ".class, " +
+                getQualifiedName() + "::new, " +
                 (tableName == null ? "null" : "\"" + tableName + "\"") +
                 ")" + (location == null ? "" : ".overrideLocations(" + JavaWriter.STATEMENT_LOCATION + "." + location + ")") + ";");
     }
@@ -320,6 +355,41 @@ public class ModelClass implements Comparable<ModelClass> {
         w.writeln("}");
     }
 
+    /**
+     * Stubs of AMF classes implement Externalizable with -amfExternalizable.
+     */
+    boolean isExternalizable() {
+        return proc.model.isAmfExternalizable() && isAmf() && !isLocal();
+    }
+
+    /**
+     * Straight-line AMF encoding of the AMF fields, in index order: one direct read or write per field.
+     */
+    private void writeExternalizable(JavaWriter w) {
+        for (ModelField f : fields) {
+            f.writeAmfEnumTable(w);
+        }
+
+        w.writeln("@" + Override.class.getName());
+        w.writeln("public void writeExternal(" + ObjectOutput.class.getName() + " out) throws " + IOException.class.getName() + " {");
+        w.writeln("prepareForSerializationSafe();");
+        for (ModelField f : fields) {
+            if (f.isAmf()) {
+                f.writeExternal(w);
+            }
+        }
+        w.writeln("}");
+
+        w.writeln("@" + Override.class.getName());
+        w.writeln("public void readExternal(" + ObjectInput.class.getName() + " in) throws " + IOException.class.getName() + ", " + ClassNotFoundException.class.getName() + " {");
+        for (ModelField f : fields) {
+            if (f.isAmf()) {
+                f.readExternal(w);
+            }
+        }
+        w.writeln("}");
+    }
+
     @SuppressWarnings("unused")
 	private void writeSerialize(JavaWriter w) {
         if (isLocal()) {
@@ -358,6 +428,71 @@ public class ModelClass implements Comparable<ModelClass> {
         w.writeln("}");
     }*/
 
+    /**
+     * Codec writing the fields with their own encoding, see {@link BinaryCodec}.
+     */
+    void writeBinaryCodec() {
+        String qn = getQualifiedName();
+        String bbs = JavaWriter.BYTE_BUFFER_STREAM;
+        JavaWriter w = new JavaWriter(proc.model, packageName, getBinaryCodecName());
+
+        w.writeln("package " + packageName + ";");
+        w.generated();
+        w.writeln("public final class " + getBinaryCodecName() + " extends " + BinaryCodec.class.getName() + "<" + qn + "> {");
+        w.writeln("public static final " + getBinaryCodecName() + " INSTANCE = new " + getBinaryCodecName() + "();");
+        for (ModelField f : fields) {
+            f.writeBinaryConstants(w);
+        }
+
+        w.writeln("private " + getBinaryCodecName() + "() {");
+        w.writeln("}");
+
+        w.writeln("@" + Override.class.getName());
+        w.writeln("public " + JavaWriter.DATA_DEFINITION + "<" + qn + "> getDefinition() {");
+        w.writeln("return " + qn + "." + getDefinitionConstant() + ";");
+        w.writeln("}");
+
+        List<ModelField> fs = new ArrayList<ModelField>(fields);
+        w.writeln("@" + Override.class.getName());
+        writeSuppressDeprecation(w, fs);
+        w.writeln("public void write(" + bbs + " out, " + qn + " data) {");
+        for (ModelField f : fs) {
+            w.writeln(f.getJavaType() + " v" + f.getIndex() + " = data.get" + ModelField.toMethod(f.getName()) + "();");
+        }
+        for (int i = 0; i < fs.size(); i += 8) {
+            StringBuilder b = new StringBuilder();
+            for (int j = i; j < Math.min(i + 8, fs.size()); j++) {
+                b.append(j == i ? "" : " | ").append("(v" + j + " == null ? 0 : " + (1 << (j - i)) + ")");
+            }
+            w.writeln("out.write(" + b + ");");
+        }
+        for (ModelField f : fs) {
+            w.writeln("if (v" + f.getIndex() + " != null) {");
+            f.writeBinary(w, "v" + f.getIndex());
+            w.writeln("}");
+        }
+        w.writeln("}");
+
+        w.writeln("@" + Override.class.getName());
+        writeSuppressDeprecation(w, fs);
+        w.writeln("public " + qn + " read(" + java.nio.ByteBuffer.class.getName() + " in) {");
+        w.writeln(qn + " data = new " + qn + "();");
+        for (int i = 0; i < fs.size(); i += 8) {
+            w.writeln("int m" + (i / 8) + " = in.get();");
+        }
+        for (ModelField f : fs) {
+            int i = f.getIndex();
+            w.writeln("if ((m" + (i / 8) + " & " + (1 << (i % 8)) + ") != 0) {");
+            f.readBinary(w, "data");
+            w.writeln("}");
+        }
+        w.writeln("return data;");
+        w.writeln("}");
+
+        w.writeln("}");
+        w.output();
+    }
+
     void writeDao() {
         if (!isPersisted()) {
             return;
@@ -380,6 +515,219 @@ public class ModelClass implements Comparable<ModelClass> {
         writeDaoInsert(w);
         writeDaoUpdate(w);
         writeDaoDelete(w);
+        writeDaoSql(w);
+        writeDaoMapRow(w);
+        writeDaoBind(w);
+        writeDaoBatch(w);
+    }
+
+    /**
+     * @return Persisted fields, in column order of the generated statements.
+     */
+    private List<ModelField> getColumns() {
+        List<ModelField> cols = new ArrayList<ModelField>();
+        for (ModelField f : fields) {
+            if (f.isColumn()) {
+                cols.add(f);
+            }
+        }
+        return cols;
+    }
+
+    private List<ModelField> getInsertColumns() {
+        List<ModelField> cols = new ArrayList<ModelField>();
+        for (ModelField f : getColumns()) {
+            if (f.getPrimaryKey() != PrimaryKeyType.AUTO) {
+                cols.add(f);
+            }
+        }
+        return cols;
+    }
+
+    private List<ModelField> getUpdateColumns() {
+        List<ModelField> cols = new ArrayList<ModelField>();
+        for (ModelField f : getColumns()) {
+            if (f.getPrimaryKey() == PrimaryKeyType.NO) {
+                cols.add(f);
+            }
+        }
+        return cols;
+    }
+
+    private ModelField getAutoKey() {
+        for (ModelField f : getPrimaryKey()) {
+            if (f.getPrimaryKey() == PrimaryKeyType.AUTO && f.isColumn()) {
+                return f;
+            }
+        }
+        return null;
+    }
+
+    private static String joinColumns(List<ModelField> cols, String suffix, String sep) {
+        StringBuilder b = new StringBuilder();
+        for (ModelField f : cols) {
+            if (b.length() > 0) {
+                b.append(sep);
+            }
+            b.append(f.getColumn()).append(suffix);
+        }
+        return b.toString();
+    }
+
+    private static void writeSuppressDeprecation(JavaWriter w, List<ModelField> cols) {
+        for (ModelField f : cols) {
+            if (f.isDeprecated()) {
+                w.writeln("@" + SuppressWarnings.class.getName() + "(\"deprecation\")");
+                return;
+            }
+        }
+    }
+
+    private static void writeSqlConstant(JavaWriter w, String name, String sql) {
+        w.writeln("public static final " + String.class.getName() + " " + name + " = \"" + sql + "\";");
+    }
+
+    /**
+     * Statements of the table, parameters and columns in the order of the map and bind methods.
+     */
+    private void writeDaoSql(JavaWriter w) {
+        List<ModelField> pk = getPrimaryKey();
+        List<ModelField> update = getUpdateColumns();
+        String where = " WHERE " + joinColumns(pk, " = ?", " AND ");
+        writeSqlConstant(w, "TABLE", tableName);
+        writeSqlConstant(w, "COLUMNS", joinColumns(getColumns(), "", ", "));
+        writeSqlConstant(w, "SELECT_SQL", "SELECT " + joinColumns(getColumns(), "", ", ") + " FROM " + tableName);
+        List<ModelField> insert = getInsertColumns();
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < insert.size(); i++) {
+            values.append(i == 0 ? "?" : ", ?");
+        }
+        writeSqlConstant(w, "INSERT_SQL", "INSERT INTO " + tableName + " (" + joinColumns(insert, "", ", ") + ") VALUES (" + values + ")");
+        if (pk.isEmpty()) {
+            return;
+        }
+        writeSqlConstant(w, "SELECT_BY_KEY_SQL", "SELECT " + joinColumns(getColumns(), "", ", ") + " FROM " + tableName + where);
+        if (!update.isEmpty()) {
+            writeSqlConstant(w, "UPDATE_SQL", "UPDATE " + tableName + " SET " + joinColumns(update, " = ?", ", ") + where);
+        }
+        writeSqlConstant(w, "DELETE_SQL", "DELETE FROM " + tableName + where);
+    }
+
+    /**
+     * Row mapping of the select statements: one direct typed read per column.
+     */
+    private void writeDaoMapRow(JavaWriter w) {
+        String qn = getQualifiedName();
+        String rs = ResultSet.class.getName();
+        String sqle = SQLException.class.getName();
+        w.writeln("public " + qn + " mapRow(" + rs + " rs) throws " + sqle + " {");
+        w.writeln("return mapRow(rs, new " + qn + "());");
+        w.writeln("}");
+
+        List<ModelField> cols = getColumns();
+        writeSuppressDeprecation(w, cols);
+        w.writeln("public " + qn + " mapRow(" + rs + " rs, " + qn + " data) throws " + sqle + " {");
+        int column = 1;
+        for (ModelField f : cols) {
+            f.writeMapColumn(w, "rs", "data", column++);
+        }
+        w.writeln("return data;");
+        w.writeln("}");
+
+        w.writeln("public " + JavaWriter.DATA_LIST + "<" + qn + "> mapRows(" + rs + " rs) throws " + sqle + " {");
+        w.writeln(JavaWriter.DATA_LIST + "<" + qn + "> res = " + qn + "." + getDefinitionConstant() + ".createList();");
+        w.writeln("while (rs.next()) {");
+        w.writeln("res.add(mapRow(rs));");
+        w.writeln("}");
+        w.writeln("return res;");
+        w.writeln("}");
+    }
+
+    private void writeDaoBindMethod(JavaWriter w, String name, List<ModelField> cols) {
+        writeSuppressDeprecation(w, cols);
+        w.writeln("public void " + name + "(" + PreparedStatement.class.getName() + " ps, " + getQualifiedName() + " data) throws " + SQLException.class.getName() + " {");
+        int parameter = 1;
+        for (ModelField f : cols) {
+            f.writeBindParameter(w, "ps", "data", parameter++);
+        }
+        w.writeln("}");
+    }
+
+    /**
+     * Parameter binding of the insert, update and key statements: one direct typed set per parameter.
+     */
+    private void writeDaoBind(JavaWriter w) {
+        writeDaoBindMethod(w, "bindInsert", getInsertColumns());
+        List<ModelField> pk = getPrimaryKey();
+        if (pk.isEmpty()) {
+            return;
+        }
+        if (!getUpdateColumns().isEmpty()) {
+            List<ModelField> cols = new ArrayList<ModelField>(getUpdateColumns());
+            cols.addAll(pk);
+            writeDaoBindMethod(w, "bindUpdate", cols);
+        }
+        writeDaoBindMethod(w, "bindKey", pk);
+    }
+
+    /**
+     * Batched insert and update on a connection, the generated keys are set back on the inserted data.
+     */
+    private void writeDaoBatch(JavaWriter w) {
+        String qn = getQualifiedName();
+        String ps = PreparedStatement.class.getName();
+        String sqle = SQLException.class.getName();
+        String list = Collection.class.getName() + "<? extends " + qn + ">";
+        ModelField auto = getAutoKey();
+
+        if (auto != null) {
+            writeSuppressDeprecation(w, Collections.singletonList(auto));
+        }
+        w.writeln("public int[] insertBatch(" + Connection.class.getName() + " c, " + list + " list) throws " + sqle + " {");
+        w.writeln(ps + " ps = c.prepareStatement(INSERT_SQL" + (auto == null ? "" : ", " + Statement.class.getName() + ".RETURN_GENERATED_KEYS") + ");");
+        w.writeln("try {");
+        w.writeln("for (" + qn + " data : list) {");
+        w.writeln("bindInsert(ps, data);");
+        w.writeln("ps.addBatch();");
+        w.writeln("}");
+        w.writeln("int[] res = ps.executeBatch();");
+        if (auto != null) {
+            w.writeln(ResultSet.class.getName() + " keys = ps.getGeneratedKeys();");
+            w.writeln("try {");
+            w.writeln("for (" + qn + " data : list) {");
+            w.writeln("if (!keys.next()) {");
+            w.writeln("break;");
+            w.writeln("}");
+            auto.writeMapColumn(w, "keys", "data", 1);
+            w.writeln("}");
+            w.writeln("}");
+            w.writeln("finally {");
+            w.writeln("keys.close();");
+            w.writeln("}");
+        }
+        w.writeln("return res;");
+        w.writeln("}");
+        w.writeln("finally {");
+        w.writeln("ps.close();");
+        w.writeln("}");
+        w.writeln("}");
+
+        if (getPrimaryKey().isEmpty() || getUpdateColumns().isEmpty()) {
+            return;
+        }
+        w.writeln("public int[] updateBatch(" + Connection.class.getName() + " c, " + list + " list) throws " + sqle + " {");
+        w.writeln(ps + " ps = c.prepareStatement(UPDATE_SQL);");
+        w.writeln("try {");
+        w.writeln("for (" + qn + " data : list) {");
+        w.writeln("bindUpdate(ps, data);");
+        w.writeln("ps.addBatch();");
+        w.writeln("}");
+        w.writeln("return ps.executeBatch();");
+        w.writeln("}");
+        w.writeln("finally {");
+        w.writeln("ps.close();");
+        w.writeln("}");
+        w.writeln("}");
     }
 
     private String getDaoHelper() {
@@ -1,5 +1,9 @@
 package io.gaultier.modeling.tool.generate;
 
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -43,6 +47,19 @@ public class ModelField {
 		index = i;
 	}
 
+	/**
+	 * @return Qualified names of the classes referenced as object, list or enum.
+	 */
+	Collection<String> getReferences() {
+		Collection<String> res = new ArrayList<String>();
+		for (AstClass c : new AstClass[] { object, list, enumType }) {
+			if (c != null && c.getQualifiedName() != null) {
+				res.add(c.getQualifiedName());
+			}
+		}
+		return res;
+	}
+
 	void parse(AstClassAnnotation f) {
 		name = f.getString("name");
 		type = f.getEnum("type");
@@ -91,6 +108,10 @@ public class ModelField {
 		return name;
 	}
 
+	int getIndex() {
+		return index;
+	}
+
 	boolean isDeprecated() {
 		return deprecated;
 	}
@@ -443,6 +464,407 @@ public class ModelField {
 //		w.writeln("}");
 	}
 
+	/**
+	 * Code table of an AMF enum field, used by {@link #writeExternal(JavaWriter)} and {@link #readExternal(JavaWriter)}.
+	 */
+	void writeAmfEnumTable(JavaWriter w) {
+		if (!isAmf() || list != null || object != null || enumType == null) {
+			return;
+		}
+		w.writeln("private static final " + JavaWriter.AMF_ENUM_TABLE + "<" + enumType.getQualifiedName() + "> " + getAmfEnumTableName() +
+				" = " + JavaWriter.AMF_ENUM_TABLE + ".of(" + enumType.getQualifiedName() + ".class);");
+	}
+
+	private String getAmfEnumTableName() {
+		return "AMF_" + getConstantName();
+	}
+
+	/**
+	 * Direct AMF write of the value, same encoding as {@link DataType#writeAmf}.
+	 */
+	void writeExternal(JavaWriter w) {
+		String v = "getValue(" + index + ")";
+		if (list != null) {
+			w.writeln("{");
+			w.writeln(List.class.getName() + "<?> v = (" + List.class.getName() + "<?>) " + v + ";");
+			w.writeln("out.writeObject(v == null ? null : v.toArray());");
+			w.writeln("}");
+			return;
+		}
+		if (object != null) {
+			w.writeln("out.writeObject(" + v + ");");
+			return;
+		}
+		if (enumType != null) {
+			w.writeln("out.writeInt(" + getAmfEnumTableName() + ".encode(" + v + "));");
+			return;
+		}
+		String write;
+		switch (type) {
+		case INTEGER:
+			write = "out.writeInt(v == null ? 0 : ((" + Integer.class.getName() + ") v).intValue());";
+			break;
+		case LONG:
+			write = "out.writeInt(v == null ? 0 : ((" + Long.class.getName() + ") v).intValue());";
+			break;
+		case ID:
+			write = "out.writeInt(v == null ? 0 : (int) ((" + Id.class.getName() + ") v).value());";
+			break;
+		case VERSION:
+			write = "out.writeInt(v == null ? 0 : (int) ((" + Version.class.getName() + ") v).value());";
+			break;
+		case DOUBLE:
+			write = "out.writeDouble(v == null ? 0. : ((" + Double.class.getName() + ") v).doubleValue());";
+			break;
+		case DATETIME:
+			write = "out.writeDouble(v == null ? 0. : ((" + Date.class.getName() + ") v).getTime());";
+			break;
+		case BINARY:
+			write = "out.writeObject(v == null ? null : ((" + ByteArray.class.getName() + ") v).toByteArray());";
+			break;
+		case STRING:
+			w.writeln("out.writeObject(" + v + ");");
+			return;
+		default:
+			w.writeln("writeAmf(" + getConstantName() + ", out);");
+			return;
+		}
+		w.writeln("{");
+		w.writeln("Object v = " + v + ";");
+		w.writeln(write);
+		w.writeln("}");
+	}
+
+	/**
+	 * Direct AMF read of the value, same decoding and substitution as {@link DataType#readAmf}.
+	 */
+	void readExternal(JavaWriter w) {
+		String set = "setValue(" + index + ", ";
+		if (list != null) {
+			w.writeln("{");
+			w.writeln("Object[] o = (Object[]) in.readObject();");
+			w.writeln(set + "o == null ? null : " + list.getQualifiedName() + "." + clazz.getDefinitionConstant() + ".createList(o));");
+			w.writeln("}");
+			return;
+		}
+		if (object != null) {
+			w.writeln(set + "in.readObject());");
+			return;
+		}
+		if (enumType != null) {
+			w.writeln(set + getAmfEnumTableName() + ".decode(in.readInt()));");
+			return;
+		}
+		boolean subst = substitution == PrimitiveSubstitution.SUBST;
+		boolean verbatim = substitution == PrimitiveSubstitution.VERBATIM;
+		String read;
+		String value;
+		switch (type) {
+		case INTEGER:
+			read = "int n = in.readInt();";
+			value = (subst ? "n == 0 ? null : " : "") + Integer.class.getName() + ".valueOf(n)";
+			break;
+		case LONG:
+			read = "int n = in.readInt();";
+			value = (subst ? "n == 0 ? null : " : "") + Long.class.getName() + ".valueOf(n)";
+			break;
+		case ID:
+			read = "int n = in.readInt();";
+			value = (verbatim ? "" : "n == 0 ? null : ") + Id.class.getName() + ".valueOf(n)";
+			break;
+		case VERSION:
+			read = "int n = in.readInt();";
+			value = (verbatim ? "" : "n == 0 ? null : ") + Version.class.getName() + ".valueOf(n)";
+			break;
+		case DOUBLE:
+			read = "double d = in.readDouble();";
+			value = (subst ? "d == 0. ? null : " : "") + Double.class.getName() + ".valueOf(d)";
+			break;
+		case DATETIME:
+			read = "double d = in.readDouble();";
+			value = (subst ? "d == 0. || " + Double.class.getName() + ".isNaN(d) ? null : " : "") + "new " + Date.class.getName() + "((long) d)";
+			break;
+		case BINARY:
+			read = "byte[] b = (byte[]) in.readObject();";
+			value = "b == null ? null : new " + JavaWriter.BYTE_BUFFER_STREAM + "(b)";
+			break;
+		case STRING:
+			w.writeln(set + "in.readObject());");
+			return;
+		default:
+			w.writeln("readAmf(" + getConstantName() + ", in);");
+			return;
+		}
+		w.writeln("{");
+		w.writeln(read);
+		w.writeln(set + value + ");");
+		w.writeln("}");
+	}
+
+	/**
+	 * @return Whether the field is a column of the table.
+	 */
+	boolean isColumn() {
+		return persistent && clazz.isPersisted();
+	}
+
+	String getColumn() {
+		return columnName == null ? name : columnName;
+	}
+
+	private String getDefinitionField() {
+		return clazz.getQualifiedName() + "." + getConstantName();
+	}
+
+	/**
+	 * Direct read of the column into the data, same conversion as {@link DataType#getOnResultSet}.
+	 * Enums keep going through their field type.
+	 */
+	void writeMapColumn(JavaWriter w, String rs, String data, int column) {
+		String set = data + ".set" + toMethod(name) + "(";
+		String fallback = set + "(" + getJavaType() + ") " + getDefinitionField() + ".getType().getOnResultSet(" + rs + ", " + column + "));";
+		if (enumType != null) {
+			w.writeln(fallback);
+			return;
+		}
+		String read;
+		String value;
+		switch (type) {
+		case INTEGER:
+			read = "int n = " + rs + ".getInt(" + column + ");";
+			value = rs + ".wasNull() ? null : " + Integer.class.getName() + ".valueOf(n)";
+			break;
+		case BOOLEAN:
+			read = "int n = " + rs + ".getInt(" + column + ");";
+			value = rs + ".wasNull() ? null : " + Boolean.class.getName() + ".valueOf(n == 1)";
+			break;
+		case LONG:
+			read = "long n = " + rs + ".getLong(" + column + ");";
+			value = rs + ".wasNull() ? null : " + Long.class.getName() + ".valueOf(n)";
+			break;
+		case ID:
+			read = "long n = " + rs + ".getLong(" + column + ");";
+			value = rs + ".wasNull() ? null : " + Id.class.getName() + ".valueOf(n)";
+			break;
+		case VERSION:
+			read = "long n = " + rs + ".getLong(" + column + ");";
+			value = rs + ".wasNull() ? null : " + Version.class.getName() + ".valueOf(n)";
+			break;
+		case DOUBLE:
+			read = "double d = " + rs + ".getDouble(" + column + ");";
+			value = rs + ".wasNull() ? null : " + Double.class.getName() + ".valueOf(d)";
+			break;
+		case STRING:
+			w.writeln(set + rs + ".getString(" + column + "));");
+			return;
+		case DATETIME:
+			// A date time codec may keep the SQL timestamps
+			w.writeln("if (" + getDefinitionField() + ".getType().getDateTimeCodec() == null) {");
+			w.writeln(Timestamp.class.getName() + " t = " + rs + ".getTimestamp(" + column + ");");
+			w.writeln(set + "t == null ? null : new " + Date.class.getName() + "(t.getTime()));");
+			w.writeln("}");
+			w.writeln("else {");
+			w.writeln(fallback);
+			w.writeln("}");
+			return;
+		case BINARY:
+			read = "byte[] b = " + rs + ".getBytes(" + column + ");";
+			value = "b == null ? null : new " + JavaWriter.BYTE_BUFFER_STREAM + "(b)";
+			break;
+		default:
+			w.writeln(fallback);
+			return;
+		}
+		w.writeln("{");
+		w.writeln(read);
+		w.writeln(set + value + ");");
+		w.writeln("}");
+	}
+
+	/**
+	 * Direct bind of the value as parameter, same conversion as {@link DataType#setOnPreparedStatement}.
+	 * Enums and binaries keep going through their field type.
+	 */
+	void writeBindParameter(JavaWriter w, String ps, String data, int parameter) {
+		String get = data + ".get" + toMethod(name) + "()";
+		if (enumType != null || type == DataType.BINARY) {
+			w.writeln(getDefinitionField() + ".getType().setOnPreparedStatement(" + ps + ", " + parameter + ", " + get + ");");
+			return;
+		}
+		String sqlType;
+		String set;
+		switch (type) {
+		case INTEGER:
+			sqlType = "INTEGER";
+			set = "setInt(" + parameter + ", v.intValue())";
+			break;
+		case BOOLEAN:
+			sqlType = "INTEGER";
+			set = "setInt(" + parameter + ", v.booleanValue() ? 1 : 0)";
+			break;
+		case LONG:
+			sqlType = "BIGINT";
+			set = "setLong(" + parameter + ", v.longValue())";
+			break;
+		case ID:
+		case VERSION:
+			sqlType = "BIGINT";
+			set = "setLong(" + parameter + ", v.value())";
+			break;
+		case DOUBLE:
+			sqlType = "DOUBLE";
+			set = "setDouble(" + parameter + ", v.doubleValue())";
+			break;
+		case STRING:
+			sqlType = "VARCHAR";
+			set = "setString(" + parameter + ", v)";
+			break;
+		case DATETIME:
+			sqlType = "TIMESTAMP";
+			set = "setTimestamp(" + parameter + ", v instanceof " + Timestamp.class.getName() + " ? (" + Timestamp.class.getName() + ") v : new " + Timestamp.class.getName() + "(v.getTime()))";
+			break;
+		default:
+			assert false : type;
+			return;
+		}
+		w.writeln("{");
+		w.writeln(getJavaType() + " v = " + get + ";");
+		w.writeln("if (v == null) {");
+		w.writeln(ps + ".setNull(" + parameter + ", " + Types.class.getName() + "." + sqlType + ");");
+		w.writeln("}");
+		w.writeln("else {");
+		w.writeln(ps + "." + set + ";");
+		w.writeln("}");
+		w.writeln("}");
+	}
+
+	private String getBinaryValuesName() {
+		return getConstantName() + "_VALUES";
+	}
+
+	private String getBinaryCodec(AstClass c) {
+		ModelClass m = clazz.proc.getModelClass(c);
+		assert m != null : clazz.getQualifiedName() + "." + name + ": " + c.getQualifiedName() + " is not a data class";
+		return m.getBinaryCodecQualifiedName() + ".INSTANCE";
+	}
+
+	/**
+	 * Constants of an enum field for {@link #readBinary(JavaWriter, String)}.
+	 */
+	void writeBinaryConstants(JavaWriter w) {
+		if (enumType != null) {
+			w.writeln("private static final " + enumType.getQualifiedName() + "[] " + getBinaryValuesName() + " = " + enumType.getQualifiedName() + ".values();");
+		}
+	}
+
+	/**
+	 * Write of the non null value v, encoding of {@link io.gaultier.modeling.model.data.BinaryCodec}.
+	 */
+	void writeBinary(JavaWriter w, String v) {
+		if (list != null) {
+			w.writeln("writeSize(out, " + v + ".size());");
+			w.writeln("for (" + list.getQualifiedName() + " e : " + v + ") {");
+			w.writeln(getBinaryCodec(list) + ".write(out, e);");
+			w.writeln("}");
+			return;
+		}
+		if (object != null) {
+			w.writeln(getBinaryCodec(object) + ".write(out, " + v + ");");
+			return;
+		}
+		if (enumType != null) {
+			w.writeln("writeSize(out, " + v + ".ordinal());");
+			return;
+		}
+		switch (type) {
+		case INTEGER:
+			w.writeln("writeVarInt(out, " + v + ".intValue());");
+			break;
+		case LONG:
+			w.writeln("writeVarLong(out, " + v + ".longValue());");
+			break;
+		case ID:
+		case VERSION:
+			w.writeln("writeVarLong(out, " + v + ".value());");
+			break;
+		case DOUBLE:
+			w.writeln("writeDouble(out, " + v + ".doubleValue());");
+			break;
+		case DATETIME:
+			w.writeln("writeVarLong(out, " + v + ".getTime());");
+			break;
+		case BOOLEAN:
+			w.writeln("out.write(" + v + ".booleanValue() ? 1 : 0);");
+			break;
+		case STRING:
+			w.writeln("writeString(out, " + v + ");");
+			break;
+		case BINARY:
+			w.writeln("writeBytes(out, " + v + ");");
+			break;
+		default:
+			assert false : type;
+		}
+	}
+
+	/**
+	 * Read of a value written by {@link #writeBinary(JavaWriter, String)} into the data.
+	 */
+	void readBinary(JavaWriter w, String data) {
+		String set = data + ".set" + toMethod(name) + "(";
+		if (list != null) {
+			w.writeln("int n = readSize(in);");
+			w.writeln(getJavaType() + " l = " + list.getQualifiedName() + "." + clazz.getDefinitionConstant() + ".createList();");
+			w.writeln("for (int i = 0; i < n; i++) {");
+			w.writeln("l.add(" + getBinaryCodec(list) + ".read(in));");
+			w.writeln("}");
+			w.writeln(set + "l);");
+			return;
+		}
+		if (object != null) {
+			w.writeln(set + getBinaryCodec(object) + ".read(in));");
+			return;
+		}
+		if (enumType != null) {
+			w.writeln(set + getBinaryValuesName() + "[readSize(in)]);");
+			return;
+		}
+		String value;
+		switch (type) {
+		case INTEGER:
+			value = Integer.class.getName() + ".valueOf(readVarInt(in))";
+			break;
+		case LONG:
+			value = Long.class.getName() + ".valueOf(readVarLong(in))";
+			break;
+		case ID:
+			value = Id.class.getName() + ".valueOf(readVarLong(in))";
+			break;
+		case VERSION:
+			value = Version.class.getName() + ".valueOf(readVarLong(in))";
+			break;
+		case DOUBLE:
+			value = Double.class.getName() + ".valueOf(readDouble(in))";
+			break;
+		case DATETIME:
+			value = "new " + Date.class.getName() + "(readVarLong(in))";
+			break;
+		case BOOLEAN:
+			value = Boolean.class.getName() + ".valueOf(in.get() != 0)";
+			break;
+		case STRING:
+			value = "readString(in)";
+			break;
+		case BINARY:
+			value = "readBytes(in)";
+			break;
+		default:
+			assert false : type;
+			return;
+		}
+		w.writeln(set + value + ");");
+	}
+
 	private String findEditJavaType() {
 		String editJavaType;
 		if (isList()) {
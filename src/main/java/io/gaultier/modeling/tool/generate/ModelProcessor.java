@@ -1,11 +1,18 @@
 package io.gaultier.modeling.tool.generate;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
 
 import io.gaultier.modeling.model.data.DataClass;
 import io.gaultier.modeling.model.data.DataDefinition;
+import io.gaultier.modeling.model.data.DataDefinitionRegistry;
 
 public class ModelProcessor {
 
@@ -24,6 +31,21 @@ public class ModelProcessor {
         return classes.get(c.getQualifiedName());
     }
 
+    /**
+     * @return The model of a data class, processing its annotations if not done yet, null if not a data class.
+     */
+    ModelClass obtainModelClass(AstClass c) {
+        ModelClass mc = getModelClass(c);
+        if (mc == null) {
+            AstClass s = model.getClass(c.getQualifiedName());
+            if (s != null && s.getSource() != null) {
+                processAnnotations(s);
+                mc = getModelClass(c);
+            }
+        }
+        return mc;
+    }
+
     private void processData(AstClass c, AstClassAnnotation a) {
         ModelClass res = new ModelClass();
         ModelClass mc = res.parse(this, c, a);
@@ -32,52 +54,140 @@ public class ModelProcessor {
         }
     }
 
-    void process() {
-        for (AstClass c : model.getParsedClasses()) {
+    private void processAnnotations(AstClass c) {
+        GenerationProfile.Timer t = model.getProfile().startInput();
+        try {
             for (AstClassAnnotation a : c.getAnnotations()) {
                 if (DataClass.class.getName().equals(a.getQualifiedName())) {
                     processData(c, a);
                 }
             }
         }
-        ModelClass[] cs = classes.values().toArray(new ModelClass[classes.size()]);
-        Arrays.sort(cs);
-        for (ModelClass c : cs) {
-            c.write();
+        finally {
+            model.getProfile().input("model", c.getQualifiedName(), t);
         }
+    }
 
+    void process() {
+        final GenerationProfile profile = model.getProfile();
+        GenerationProfile.Timer t = profile.start();
+        for (AstClass c : model.getParsedClasses()) {
+            if (model.isRegenerated(c)) {
+                processAnnotations(c);
+            }
+        }
+        // The referenced classes are needed to write the regenerated ones
+        Set<String> deps = new TreeSet<String>();
+        for (ModelClass c : classes.values()) {
+            deps.addAll(c.getDependencies());
+        }
+        for (String d : deps) {
+            AstClass c = model.getClass(d);
+            if (c != null && !classes.containsKey(d)) {
+                processAnnotations(c);
+            }
+        }
+        List<ModelClass> cs = new ArrayList<ModelClass>();
+        for (ModelClass c : classes.values()) {
+            if (model.isRegenerated(model.getClass(c.getQualifiedName()))) {
+                cs.add(c);
+            }
+        }
+        Collections.sort(cs);
+        profile.phase("model", t);
+        t = profile.start();
+        List<Callable<Void>> writes = new ArrayList<Callable<Void>>(cs.size());
+        for (final ModelClass c : cs) {
+            writes.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    GenerationProfile.Timer ct = profile.startInput();
+                    model.generate(c, new Runnable() {
+                        @Override
+                        public void run() {
+                            c.write();
+                            if (model.isDao()) {
+                                c.writeDao();
+                            }
+                            if (model.isBinaryCodecs()) {
+                                c.writeBinaryCodec();
+                            }
+                        }
+                    });
+                    profile.input("write", c.getQualifiedName(), ct);
+                    return null;
+                }
+            });
+        }
+        model.invokeAll(writes);
+        profile.phase("write", t);
+
+        t = profile.start();
         //TODO program param
-        writeDataObjectRegistery(cs, "com.babysittor.model");
+        writeDataObjectRegistery(model.getDataClasses(classes.keySet()), "com.babysittor.model");
+        profile.phase("registry", t);
 
     }
 
-    private void writeDataObjectRegistery(ModelClass[] cs, String pack) {
+    /**
+     * Registry of the definitions, a data class is only initialized when its definition is looked up.
+     */
+    private void writeDataObjectRegistery(Collection<String> cs, String pack) {
+        String def = DataDefinition.class.getName();
+        String reg = DataDefinitionRegistry.class.getName();
         JavaWriter w = new JavaWriter(model, pack, "DataObjectRegistery");
         w.writeln("package " + pack + ";\n");
         w.writeln("public final class DataObjectRegistery {");
-        w.writeln("@SuppressWarnings(\"rawtypes\")");
-        w.writeln("public final static " + DataDefinition.class.getName() + "[] ALL_DEFINITIONS = new " + DataDefinition.class.getName() + "[] {");
-        for (int i = 0; i < cs.length; i++) {
-            ModelClass c = cs[i];
-            w.write(c.getPackageName() + ".");
-            w.write(c.getDataName() + ".");
-            w.write(c.getDefinitionConstant());
-            if (i + 1 < cs.length) {
+        w.writeln("public static final " + reg + " REGISTRY = new " + reg + "(new String[] {");
+        int i = 0;
+        for (String c : cs) {
+            w.write("\"" + c + "\"");
+            if (++i < cs.size()) {
                 w.writeln(",");
             }
         }
-        w.writeln("};");
-        String s = DataDefinition.class.getName();
-        w.writeln("public final static java.util.Map<Class, "+ s +"> MAP_DEF = new java.util.HashMap<>();\n" +
-                "static {\n" +
-                "    for ("+ s +" def : ALL_DEFINITIONS) {\n" +
-                "        MAP_DEF.put(def.getDataClass(), def);\n" +
-                "}\n" +
-                "}\n");
+        w.write("}, ");
+        TypeIds ids = model.getTypeIds();
+        if (ids != null) {
+            ids.load();
+            w.write("new int[] {");
+            i = 0;
+            for (String c : cs) {
+                w.write((i++ == 0 ? "" : ", ") + ids.get(c));
+            }
+            w.write("}, ");
+            ids.save();
+        }
+        w.writeln("DataObjectRegistery::load);");
+
+        w.writeln("private DataObjectRegistery() {");
+        w.writeln("}");
+
+        w.writeln("private static " + def + "<?> load(int index) {");
+        w.writeln("switch (index) {");
+        i = 0;
+        for (String c : cs) {
+            w.writeln("case " + i++ + ":");
+            if (model.isBinaryCodecs()) {
+                w.writeln(c + "." + ModelClass.DEFINITION_CONSTANT + ".setBinaryCodec(" + c.substring(0, c.length() - "Data".length()) + "BinaryCodec.INSTANCE);");
+            }
+            w.writeln("return " + c + "." + ModelClass.DEFINITION_CONSTANT + ";");
+        }
+        w.writeln("default:");
+        w.writeln("throw new " + IndexOutOfBoundsException.class.getName() + "(String.valueOf(index));");
+        w.writeln("}");
+        w.writeln("}");
+
+        w.writeln("public static " + def + "<?> getDefinition(Class<?> c) {");
+        w.writeln("return REGISTRY.get(c);");
+        w.writeln("}");
+
+        w.writeln("public static " + List.class.getName() + "<" + def + "<?>> getAllDefinitions() {");
+        w.writeln("return REGISTRY.getAll();");
+        w.writeln("}");
 
         w.writeln("}");
         w.output();
     }
 
-
 }
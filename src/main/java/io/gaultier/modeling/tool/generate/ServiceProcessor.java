@@ -1,6 +1,9 @@
 package io.gaultier.modeling.tool.generate;
 
 import java.util.*;
+import java.util.concurrent.*;
+
+import io.gaultier.modeling.service.support.*;
 
 public class ServiceProcessor {
 
@@ -26,10 +29,16 @@ public class ServiceProcessor {
         String facName = name + "Facade";
         String amfName = facName + "Amf";
         String apiName = name + "ServiceAmf";
+        String asyncName = facName + "Async";
         JavaWriter fw = null;
+        JavaWriter sw = null;
+        StringBuilder iw = new StringBuilder();
         JavaWriter aw = null;
         JavaWriter pw = null;
         Collection<String> enumTypes = new TreeSet<String>();
+        StringBuilder dw = new StringBuilder();
+        StringBuilder bw = new StringBuilder();
+        Map<String, Integer> overloads = new HashMap<String, Integer>();
         for (AstMethod m : c.getMethods()) {
             if (m.isStatic()) {
                 continue;
@@ -37,11 +46,21 @@ public class ServiceProcessor {
             if (!m.isPublic()) {
                 continue;
             }
+            if (!isResolved(m)) {
+                model.warning(c.getQualifiedName() + "." + m.getName() + " skipped, a type is unresolved");
+                continue;
+            }
             if (fw == null || aw == null || pw == null) {
                 fw = new JavaWriter(model, c.getPackageName(), facName);
                 fw.writeln("package " + c.getPackageName() + ";");
                 fw.writeln("public interface " + facName + " {");
 
+                sw = new JavaWriter(model, c.getPackageName(), asyncName);
+                sw.writeln("package " + c.getPackageName() + ";");
+                sw.ln();
+                sw.generated();
+                sw.writeln("public interface " + asyncName + " {");
+
                 aw = new JavaWriter(model, c.getPackageName(), amfName);
                 aw.writeln("package " + c.getPackageName() + ";");
                 aw.ln();
@@ -64,7 +83,15 @@ public class ServiceProcessor {
                 pw.writeln("\t}");
             }
 
-            writeMethod(mp, fw, aw, pw, m, enumTypes);
+            Integer rank = overloads.get(m.getName());
+            rank = rank == null ? 1 : rank + 1;
+            overloads.put(m.getName(), rank);
+            boolean batch = rank == 1;
+            if (!batch) {
+                model.warning(c.getQualifiedName() + "." + m.getName() + " is overloaded, only the first one can be batched");
+            }
+            writeMethod(mp, fw, aw, pw, m, enumTypes, rank, batch ? dw : null, batch ? bw : null);
+            writeAsyncMethod(sw, iw, m);
         }
 
         if (fw != null && aw != null && pw != null) {
@@ -73,10 +100,15 @@ public class ServiceProcessor {
                 aw.writeln("\tprivate static final " + JavaWriter.FIELD_TYPE + " " + getEnumTypeConstant(e) +
                         " = " + JavaWriter.FIELD_TYPE + ".getEnum(" + e + ".class);");
             }
+            writeBatchDispatch(aw, dw);
+            writeBatch(pw, bw);
+            writeAsyncDefault(sw, iw, c.getPackageName() + "." + facName, asyncName);
             fw.writeln("}");
             aw.writeln("}");
             pw.writeln("}");
+            sw.writeln("}");
             fw.output();
+            sw.output();
             aw.output();
             pw.output();
         }
@@ -85,12 +117,17 @@ public class ServiceProcessor {
         }
     }
 
-    private void writeMethod(ModelProcessor mp, JavaWriter fw, JavaWriter aw, JavaWriter pw, AstMethod m, Collection<String> enumTypes) {
+    /**
+     * @param rank Rank of the method among the ones of the same name, from 1.
+     * @param dw Cases of the batch dispatch of the adapter, null if not batched.
+     * @param bw Methods of the batch of the client stub, null if not batched.
+     */
+    private void writeMethod(ModelProcessor mp, JavaWriter fw, JavaWriter aw, JavaWriter pw, AstMethod m, Collection<String> enumTypes,
+            int rank, StringBuilder dw, StringBuilder bw) {
         if (display) {
             System.out.println("\t" +  m.getName());
         }
         aw.ln();
-        aw.write("\tpublic ");
         pw.ln();
 
         boolean isReturningCollection = m.getReturnType().isCollection();
@@ -98,7 +135,12 @@ public class ServiceProcessor {
         String ft = at;
         String pt = at;
         String ty;
+        String dt = "";
+        String bt = "";
         boolean first = true;
+        int index = 0;
+        Map<String, String> types = new LinkedHashMap<String, String>();
+        Collection<String> dataParameters = new HashSet<String>();
         for (AstVariable p : m.getParameters()) {
             if (first) {
                 first = false;
@@ -107,22 +149,33 @@ public class ServiceProcessor {
                 at += ", ";
                 ft += ", ";
                 pt += ", ";
+                dt += ", ";
             }
+            bt += ", " + p.getName();
             ft += p.getType().getFullName();
             if (p.getType().isId()) {
                 at += "long";
                 pt += "long";
+                dt += getBatchArgument("long", index);
+                types.put(p.getName(), "long");
             }
             else if (p.getType().isEnum()) {
                 at += "int";
                 pt += "int";
+                dt += getBatchArgument("int", index);
+                types.put(p.getName(), "int");
                 //System.out.println(p.getType().getQualifiedName() + " is enum");
             }
             else { //TO-DO datalist
                 //System.out.println(p.getType().getFullName());
                 at += p.getType().getFullName();
-                ModelClass mc = mp.getModelClass(p.getType());
+                dt += getBatchArgument(p.getType().getFullName(), index);
+                types.put(p.getName(), p.getType().getFullName());
+                ModelClass mc = mp.obtainModelClass(p.getType());
                 //System.out.println(p.getType().getQualifiedName() + p.getType() + " " + mc);
+                if (mc != null || p.getType().isDataList() || hasModelArgument(mp, p.getType())) {
+                    dataParameters.add(p.getName());
+                }
                 if (mc == null) {
                     String c = p.getType().getFullName();
                     if (p.getType().isCollection()) {
@@ -141,6 +194,7 @@ public class ServiceProcessor {
             at += " " + p.getName();
             ft += " " + p.getName();
             pt += " " + p.getName();
+            index++;
         }
         fw.writeln(m.getReturnType().getFullName() + ft + ");");
 
@@ -155,11 +209,41 @@ public class ServiceProcessor {
         }
         else {
             ty = m.getReturnType().getFullName();
-            ModelClass mc = mp.getModelClass(m.getReturnType());
+            ModelClass mc = mp.obtainModelClass(m.getReturnType());
             pty = mc == null ? ty : mc.getApiAmfStubQualifiedName();
         }
-        aw.writeln(ty + at + ") {");
-        aw.writeln("\t\t" + JavaWriter.BOT_LIMITER + ".service(1);");
+        if (dw != null) {
+            dw.append("\t\tcase \"" + m.getName() + "\":\n");
+            if ("void".equals(ty)) {
+                dw.append("\t\t\t" + m.getName() + "(" + dt + ");\n");
+                dw.append("\t\t\treturn null;\n");
+            }
+            else {
+                dw.append("\t\t\treturn " + m.getName() + "(" + dt + ");\n");
+            }
+        }
+        if (bw != null) {
+            bw.append("\n");
+            bw.append("\t\tpublic " + CallBatch.class.getName() + ".Call<" + getBatchResultType(m.getReturnType(), pty) + ">" + pt + ") {\n");
+            bw.append("\t\t\treturn calls.add(\"" + m.getName() + "\"" + bt + ");\n");
+            bw.append("\t\t}\n");
+        }
+        AstMethodAnnotation ca = getAnnotation(m, CacheResponse.class);
+        if (ca != null && "void".equals(ty)) {
+            model.warning(m.getClassAssociated().getQualifiedName() + "." + m.getName() + " returns nothing to cache");
+            ca = null;
+        }
+        ca = checkKey(m, ca, types, dataParameters);
+        AstMethodAnnotation fa = checkKey(m, getAnnotation(m, CoalesceCalls.class), types, dataParameters);
+        if (ca != null || fa != null || model.isServiceMetrics()) {
+            writeWrappedMethod(aw, m, rank, ca, fa, ty, at, types);
+            aw.ln();
+            aw.writeln("\tprivate " + ty + " " + m.getName() + "Call(" + at.substring(at.indexOf('(') + 1) + ") {");
+        }
+        else {
+            aw.writeln("\tpublic " + ty + at + ") {");
+            aw.writeln("\t\t" + JavaWriter.BOT_LIMITER + ".service(1);");
+        }
 
         if (pty.indexOf('<') >= 0) {
             pw.writeln("\t@SuppressWarnings(\"unchecked\")");
@@ -174,7 +258,7 @@ public class ServiceProcessor {
             pt += "return (" + pty + ") ";
         }
         else if (m.getReturnType().isId()) {
-            at += "return ";
+            at += "return " + JavaWriter.ID + ".toPrimitive(";
             pt += "Number resPrimitive = (Number) ";
         }
         else if (!"void".equals(m.getReturnType().getFullName())) {
@@ -219,7 +303,7 @@ public class ServiceProcessor {
             }
             pt += p.getName();
         }
-        at += ");";
+        at += m.getReturnType().isId() ? "));" : ");";
         aw.writeln(at);
         pt += ");";
         pw.writeln(pt);
@@ -236,17 +320,420 @@ public class ServiceProcessor {
         pw.writeln("\t}");
     }
 
+    private static AstMethodAnnotation getAnnotation(AstMethod m, Class<?> a) {
+        for (AstMethodAnnotation ma : m.getAnnotations()) {
+            if (a.getName().equals(ma.getQualifiedName())) {
+                return ma;
+            }
+        }
+        return null;
+    }
+
+    private static Collection<String> getStrings(Object v) {
+        Collection<String> res = new ArrayList<String>();
+        if (v instanceof String) {
+            res.add((String) v);
+        }
+        else if (v instanceof String[]) {
+            res.addAll(Arrays.asList((String[]) v));
+        }
+        else if (v instanceof List<?>) {
+            for (Object o : (List<?>) v) {
+                res.add((String) o);
+            }
+        }
+        return res;
+    }
+
+    private static Collection<String> getKeyParameters(AstMethodAnnotation a, Map<String, String> types) {
+        Collection<String> key = getStrings(a.getValues().get("key"));
+        return key.isEmpty() ? types.keySet() : key;
+    }
+
+    private static boolean hasModelArgument(ModelProcessor mp, AstClass c) {
+        for (AstClass a : c.getArguments()) {
+            if (a.getQualifiedName() != null && mp.obtainModelClass(a) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Data objects and lists do not override equals, a key of them would never be found again.
+     * @param data Names of the parameters of data objects, lists of them, and data lists.
+     * @return The annotation, null with a warning if its key has such a parameter.
+     */
+    private AstMethodAnnotation checkKey(AstMethod m, AstMethodAnnotation a, Map<String, String> types, Collection<String> data) {
+        if (a == null) {
+            return null;
+        }
+        String n = a.getQualifiedName().substring(a.getQualifiedName().lastIndexOf('.') + 1);
+        for (String k : getKeyParameters(a, types)) {
+            if (data.contains(k)) {
+                model.warning(m.getClassAssociated().getQualifiedName() + "." + m.getName() + ": @" + n + " ignored, data parameter " +
+                        k + " in its key, exclude it with key");
+                return null;
+            }
+        }
+        return a;
+    }
+
+    /**
+     * @return Expression of the {@link CallKey} of the call, from the parameters named in the key of the annotation, all if none.
+     * @param types Types of the parameters of the adapter, by name.
+     */
+    private String getCallKey(AstMethod m, AstMethodAnnotation a, Map<String, String> types) {
+        Collection<String> key = getKeyParameters(a, types);
+        String numbers = "";
+        String objects = "";
+        for (String k : key) {
+            String t = types.get(k);
+            if (t == null) {
+                model.warning("No parameter " + k + " for the key of " + m.getClassAssociated().getQualifiedName() + "." + m.getName());
+                continue;
+            }
+            switch (t) {
+            case "long":
+            case "int":
+            case "short":
+            case "byte":
+            case "char":
+                numbers += (numbers.isEmpty() ? "" : ", ") + k;
+                break;
+            case "boolean":
+                numbers += (numbers.isEmpty() ? "" : ", ") + "(" + k + " ? 1L : 0L)";
+                break;
+            case "double":
+            case "float":
+                numbers += (numbers.isEmpty() ? "" : ", ") + "Double.doubleToLongBits(" + k + ")";
+                break;
+            default:
+                objects += (objects.isEmpty() ? "" : ", ") + k;
+                break;
+            }
+        }
+        return "new " + CallKey.class.getName() + "(" + (numbers.isEmpty() ? "null" : "new long[] { " + numbers + " }") + ", " +
+                (objects.isEmpty() ? "null" : "new Object[] { " + objects + " }") + ")";
+    }
+
+    /**
+     * Method of the adapter running the method call through its {@link ResponseCache} and {@link SingleFlight},
+     * recording it in {@link ServiceMetrics} with -serviceMetrics.
+     * The cache is looked up first, so only misses are coalesced, and the metrics are of all the calls.
+     * @param rank Rank of the method among the ones of the same name, from 1: the constants and the names of the
+     * metrics, cache and coalescing of an overload end with it, like TOUCH_2_METRICS and UserService.touch_2.
+     * @param ca Cache annotation, null if none.
+     * @param fa Coalescing annotation, null if none.
+     * @param types Types of the parameters of the adapter, by name.
+     */
+    private void writeWrappedMethod(JavaWriter aw, AstMethod m, int rank, AstMethodAnnotation ca, AstMethodAnnotation fa,
+            String ty, String at, Map<String, String> types) {
+        String suffix = rank == 1 ? "" : "_" + rank;
+        String name = m.getClassAssociated().getSimpleName() + "." + m.getName() + suffix;
+        String constant = JavaWriter.toConstantName(m.getName(), false) + suffix;
+        String args = "";
+        for (String p : types.keySet()) {
+            args += (args.isEmpty() ? "" : ", ") + p;
+        }
+        String call = m.getName() + "Call(" + args + ")";
+        String cacheKey = ca == null ? null : getCallKey(m, ca, types);
+        String flightKey = fa == null ? null : getCallKey(m, fa, types);
+        boolean oneKey = cacheKey == null || flightKey == null || cacheKey.equals(flightKey);
+        if (model.isServiceMetrics()) {
+            aw.writeln("\tprivate static final " + ServiceMetrics.Recorder.class.getCanonicalName() + " " + constant + "_METRICS = " +
+                    ServiceMetrics.class.getName() + ".get().getRecorder(\"" + name + "\");");
+        }
+        if (fa != null) {
+            String sf = SingleFlight.class.getName() + "<" + box(ty) + ">";
+            aw.writeln("\tpublic static final " + sf + " " + constant + "_FLIGHT = new " + sf + "(\"" + name + "\", " +
+                    fa.getInt("timeoutMillis") + ");");
+            call = constant + "_FLIGHT.get(" + (oneKey ? "key" : "flightKey") + ", () -> " +
+                    ("void".equals(ty) ? "{ " + call + "; return null; }" : call) + ")";
+        }
+        if (ca != null) {
+            String rc = ResponseCache.class.getName() + "<" + box(ty) + ">";
+            aw.writeln("\tpublic static final " + rc + " " + constant + "_CACHE = new " + rc + "(\"" + name + "\", " +
+                    ca.getInt("maxEntries") + ", " + ca.getInt("ttlSeconds") + ");");
+            call = constant + "_CACHE.get(key, () -> " + call + ")";
+        }
+        aw.ln();
+        aw.writeln("\tpublic " + ty + at + ") {");
+        aw.writeln("\t\t" + JavaWriter.BOT_LIMITER + ".service(1);");
+        String kt = CallKey.class.getName();
+        if (ca != null || fa != null) {
+            aw.writeln("\t\t" + kt + " key = " + (cacheKey == null ? flightKey : cacheKey) + ";");
+        }
+        if (!oneKey) {
+            aw.writeln("\t\t" + kt + " flightKey = " + flightKey + ";");
+        }
+        if (!model.isServiceMetrics()) {
+            aw.writeln("\t\t" + ("void".equals(ty) ? "" : "return ") + call + ";");
+            aw.writeln("\t}");
+            return;
+        }
+        String metrics = constant + "_METRICS";
+        boolean collection = m.getReturnType().isCollection();
+        aw.writeln("\t\tlong start = " + metrics + ".start();");
+        if (collection) {
+            aw.writeln("\t\tint elements = -1;");
+        }
+        aw.writeln("\t\tboolean failed = true;");
+        aw.writeln("\t\ttry {");
+        if ("void".equals(ty)) {
+            aw.writeln("\t\t\t" + call + ";");
+            aw.writeln("\t\t\tfailed = false;");
+        }
+        else {
+            aw.writeln("\t\t\t" + ty + " res = " + call + ";");
+            if (collection) {
+                aw.writeln("\t\t\telements = res == null ? 0 : res.length;");
+            }
+            aw.writeln("\t\t\tfailed = false;");
+            aw.writeln("\t\t\treturn res;");
+        }
+        aw.writeln("\t\t}");
+        aw.writeln("\t\tfinally {");
+        aw.writeln("\t\t\t" + metrics + ".end(start, " + (collection ? "elements" : "-1") + ", failed);");
+        aw.writeln("\t\t}");
+        aw.writeln("\t}");
+    }
+
+    private static String box(String type) {
+        switch (type) {
+        case "void":
+            return Void.class.getSimpleName();
+        case "int":
+            return Integer.class.getSimpleName();
+        case "char":
+            return Character.class.getSimpleName();
+        case "long":
+        case "short":
+        case "byte":
+        case "double":
+        case "float":
+        case "boolean":
+            return Character.toUpperCase(type.charAt(0)) + type.substring(1);
+        default:
+            return type;
+        }
+    }
+
+    /**
+     * Method of the async facade, and its implementation running the method of the facade on an executor.
+     */
+    private void writeAsyncMethod(JavaWriter sw, StringBuilder iw, AstMethod m) {
+        String rt = m.getReturnType().getFullName();
+        String ft = " " + m.getName() + "(";
+        String args = "";
+        for (AstVariable p : m.getParameters()) {
+            if (!args.isEmpty()) {
+                ft += ", ";
+                args += ", ";
+            }
+            ft += p.getType().getFullName() + " " + p.getName();
+            args += p.getName();
+        }
+        String ty = CompletableFuture.class.getName() + "<" + box(rt) + ">";
+        sw.ln();
+        sw.writeln("\t" + ty + ft + ");");
+        iw.append("\n");
+        iw.append("\t\t@Override\n");
+        iw.append("\t\tpublic " + ty + ft + ") {\n");
+        if ("void".equals(rt)) {
+            iw.append("\t\t\treturn " + CompletableFuture.class.getName() + ".runAsync(() -> facade." + m.getName() + "(" + args + "), executor);\n");
+        }
+        else {
+            iw.append("\t\t\treturn " + CompletableFuture.class.getName() + ".supplyAsync(() -> facade." + m.getName() + "(" + args + "), executor);\n");
+        }
+        iw.append("\t\t}\n");
+    }
+
+    /**
+     * Factories of the async facade, and its implementation on an executor.
+     */
+    private void writeAsyncDefault(JavaWriter sw, StringBuilder iw, String facade, String asyncName) {
+        String e = Executor.class.getName();
+        sw.ln();
+        sw.writeln("\t/**");
+        sw.writeln("\t * @return The facade, its calls run on the default executor, virtual threads when available.");
+        sw.writeln("\t */");
+        sw.writeln("\tstatic " + asyncName + " of(" + facade + " f) {");
+        sw.writeln("\t\treturn of(f, " + AsyncExecutors.class.getName() + ".getDefault());");
+        sw.writeln("\t}");
+        sw.ln();
+        sw.writeln("\tstatic " + asyncName + " of(" + facade + " f, " + e + " e) {");
+        sw.writeln("\t\treturn new Default(f, e);");
+        sw.writeln("\t}");
+        sw.ln();
+        sw.writeln("\tfinal class Default implements " + asyncName + " {");
+        sw.ln();
+        sw.writeln("\t\tprivate final " + facade + " facade;");
+        sw.writeln("\t\tprivate final " + e + " executor;");
+        sw.ln();
+        sw.writeln("\t\tDefault(" + facade + " f, " + e + " e) {");
+        sw.writeln("\t\t\tfacade = f;");
+        sw.writeln("\t\t\texecutor = e;");
+        sw.writeln("\t\t}");
+        sw.write(iw.toString());
+        sw.writeln("\t}");
+    }
+
+    /**
+     * @return Argument of a call from the array a, converted to the type of the parameter, like for a batched call of an adapter.
+     */
+    static String getBatchArgument(String type, int index) {
+        String a = "a[" + index + "]";
+        switch (type) {
+        case "long":
+        case "int":
+        case "short":
+        case "byte":
+        case "double":
+        case "float":
+            return "((Number) " + a + ")." + type + "Value()";
+        case "boolean":
+            return "(Boolean) " + a;
+        case "char":
+            return "(Character) " + a;
+        default:
+            return "(" + type + ") " + a;
+        }
+    }
+
+    /**
+     * @return Type of the result of a batched call on the client, as received from the adapter.
+     */
+    private static String getBatchResultType(AstClass rt, String pty) {
+        if (rt.isId()) {
+            return Number.class.getSimpleName();
+        }
+        String n = rt.getFullName();
+        if ("void".equals(n)) {
+            return Void.class.getSimpleName();
+        }
+        if ("boolean".equals(n)) {
+            return Boolean.class.getSimpleName();
+        }
+        if ("char".equals(n)) {
+            return Character.class.getSimpleName();
+        }
+        return rt.isPrimitive() ? Number.class.getSimpleName() : pty;
+    }
+
+    /**
+     * Method of the adapter running the calls of a batch, with a switch on the method name.
+     */
+    private void writeBatchDispatch(JavaWriter aw, StringBuilder dw) {
+        String e = Executor.class.getName();
+        aw.ln();
+        aw.writeln("\tprivate static volatile " + e + " batchExecutor;");
+        aw.ln();
+        aw.writeln("\t/**");
+        aw.writeln("\t * Run the calls of the next batches in parallel on the executor, in order on the calling thread if null.");
+        aw.writeln("\t */");
+        aw.writeln("\tpublic static void setBatchExecutor(" + e + " e) {");
+        aw.writeln("\t\tbatchExecutor = e;");
+        aw.writeln("\t}");
+        aw.ln();
+        aw.writeln("\tpublic Object[] " + CallBatch.METHOD + "(String[] methods, Object[][] args) {");
+        aw.writeln("\t\treturn " + CallBatch.class.getName() + ".dispatch(this::invokeCall, methods, args, batchExecutor);");
+        aw.writeln("\t}");
+        aw.ln();
+        if (dw.indexOf("<") >= 0) {
+            aw.writeln("\t@SuppressWarnings(\"unchecked\")");
+        }
+        aw.writeln("\tprivate Object invokeCall(String method, Object[] a) {");
+        aw.writeln("\t\tswitch (method) {");
+        aw.write(dw.toString());
+        aw.writeln("\t\tdefault:");
+        aw.writeln("\t\t\tthrow new IllegalArgumentException(\"No method \" + method);");
+        aw.writeln("\t\t}");
+        aw.writeln("\t}");
+    }
+
+    /**
+     * Batch of the client stub, queuing calls sent in one request.
+     */
+    private void writeBatch(JavaWriter pw, StringBuilder bw) {
+        String cb = CallBatch.class.getName();
+        pw.ln();
+        pw.writeln("\t/**");
+        pw.writeln("\t * @return A batch of calls, sent in one request.");
+        pw.writeln("\t */");
+        pw.writeln("\tpublic Batch newBatch() {");
+        pw.writeln("\t\treturn new Batch();");
+        pw.writeln("\t}");
+        pw.ln();
+        pw.writeln("\tpublic final class Batch {");
+        pw.ln();
+        pw.writeln("\t\tprivate final " + cb + " calls = new " + cb + "();");
+        pw.write(bw.toString());
+        pw.ln();
+        pw.writeln("\t\tpublic int size() {");
+        pw.writeln("\t\t\treturn calls.size();");
+        pw.writeln("\t\t}");
+        pw.ln();
+        pw.writeln("\t\tpublic void send() {");
+        pw.writeln("\t\t\tcalls.complete(remoteInvoker.invoke(remoteLocation + " + cb + ".METHOD, calls.getMethods(), calls.getArguments()));");
+        pw.writeln("\t\t}");
+        pw.writeln("\t}");
+    }
+
     private String getEnumTypeConstant(String e) {
         return "ENUM_" + e.replace('.', '_');
     }
 
-    void process(ModelProcessor mp) {
-        for (AstClass c : model.getParsedClasses()) {
-            for (AstClassAnnotation a : c.getAnnotations()) {
+    /**
+     * @return Qualified names of the types of the parameters and results of the methods, without the unresolved ones.
+     */
+    static Collection<String> getDependencies(AstClass c) {
+        Collection<String> res = new TreeSet<String>();
+        for (AstMethod m : c.getMethods()) {
+            addDependency(res, c, m, m.getReturnType());
+            for (AstVariable p : m.getParameters()) {
+                addDependency(res, c, m, p.getType());
+            }
+        }
+        return res;
+    }
+
+    private static boolean isResolved(AstMethod m) {
+        if (m.getReturnType().getQualifiedName() == null) {
+            return false;
+        }
+        for (AstVariable p : m.getParameters()) {
+            if (p.getType().getQualifiedName() == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void addDependency(Collection<String> res, AstClass c, AstMethod m, AstClass t) {
+        String n = t.getQualifiedName();
+        if (n == null) {
+            c.model.warning("Unresolved type in " + c.getQualifiedName() + "." + m.getName() + ", not a dependency");
+            return;
+        }
+        res.add(n);
+    }
+
+    void process(final ModelProcessor mp) {
+        for (final AstClass c : model.getParsedClasses()) {
+            if (!model.isRegenerated(c)) {
+                continue;
+            }
+            for (final AstClassAnnotation a : c.getAnnotations()) {
                 //System.out.println(a.getQualifiedName());
                 if (JavaWriter.SERVICE_CLASS.equals(a.getQualifiedName())) {
                     //System.out.println("Service: " + c.getQualifiedName());
-                    processService(mp, c, a);
+                    model.generate(c.getSource(), false, getDependencies(c), new Runnable() {
+                        @Override
+                        public void run() {
+                            processService(mp, c, a);
+                        }
+                    });
                 }
             }
         }
@@ -4,8 +4,12 @@ import japa.parser.*;
 import japa.parser.ast.*;
 
 import java.io.*;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
 
+import javax.annotation.processing.*;
+import javax.lang.model.element.*;
 
 import io.gaultier.modeling.util.base.*;
 
@@ -19,6 +23,7 @@ public class SourceModel {
 	private File htmlTargetRoot;
 	private boolean outputCheck = true;
 	private boolean dumpControls;
+	private boolean controlDispatchers;
 	private Collection<File> generatedFiles = new HashSet<File>();
 
 	private Map<String, AstClass> classes = new TreeMap<String, AstClass>();
@@ -28,17 +33,34 @@ public class SourceModel {
 
 	private ModelProcessor models = new ModelProcessor(this);
 	private ControlProcessor controls = new ControlProcessor(this);
+	private ServiceProcessor services = new ServiceProcessor(this);
 
 	private boolean onlyJson;
+	private boolean amfExternalizable;
+	private boolean dao;
+	private boolean serviceAdapters;
+	private boolean serviceMetrics;
+	private boolean binaryCodecs;
+	private File typeIdsFile;
+	private boolean full;
+	private File cacheFile;
+	private GenerationCache cache;
+	private boolean cacheSaved;
+	private final List<String> outputOptions = new ArrayList<String>();
+	private final ThreadLocal<Collection<File>> outputs = new ThreadLocal<Collection<File>>();
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private GenerationProfile profile = new GenerationProfile(false, null);
+	private Filer filer;
+	private final List<Element> originatingElements = new ArrayList<Element>();
 
 	static {
 		IGNORED_FILES = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
-		IGNORED_FILES.addAll(Arrays.asList(".", "..", ".svn", ".DS_Store"));
+		IGNORED_FILES.addAll(Arrays.asList(".", "..", ".svn", ".DS_Store", GenerationCache.FILE_NAME));
 		IGNORED_FILE_EXTENSIONS = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
 		IGNORED_FILE_EXTENSIONS.addAll(Arrays.asList("js", "js.map"));
 	}
 
-	public CompiledClass getCompiledClass(String n) {
+	public synchronized CompiledClass getCompiledClass(String n) {
 		CompiledClass c = compiled.get(n);
 		if (c == null) {
 			c = new CompiledClass(this, n);
@@ -48,46 +70,271 @@ public class SourceModel {
 	}
 
 	void loadClass(File file) {
-		StringBuilder buf;
+		register(parseClass(file));
+	}
+
+	/**
+	 * Parse the files on a pool of {@link #getThreads()} threads, then add the classes in the order of the files.
+	 * With a generation cache, only the files to regenerate are parsed now, the others when they are used.
+	 */
+	void loadClasses(List<File> files) {
+		cache = cacheSaved ? cache.next() : openCache();
+		cacheSaved = false;
+		if (cache == null) {
+			for (AstClass c : parseClasses(files)) {
+				register(c);
+			}
+			return;
+		}
+		Map<File, AstClass> parsed = new HashMap<File, AstClass>();
+		List<File> load = cache.update(files);
+		Set<String> names = new HashSet<String>();
+		for (AstClass c : parseClasses(load)) {
+			parsed.put(c.getSource(), c);
+			GenerationCache.Entry e = cache.get(c.getSource());
+			e.className = c.getQualifiedName();
+			if (e.changed && e.className != null) {
+				names.add(e.className);
+			}
+		}
+		cache.markDependents(names);
+		for (File f : files) {
+			AstClass c = parsed.get(f);
+			GenerationCache.Entry e = cache.get(f);
+			if (c == null && e.className != null) {
+				c = AstClass.lazy(this, f, e.className);
+			}
+			if (c != null) {
+				register(c);
+			}
+			if (!e.regenerate) {
+				for (String o : e.outputs) {
+					File of = new File(o);
+					makeFile(of.getParentFile(), of.getName());
+				}
+			}
+		}
+	}
+
+	private List<AstClass> parseClasses(List<File> files) {
+		List<Callable<AstClass>> tasks = new ArrayList<Callable<AstClass>>(files.size());
+		for (final File f : files) {
+			tasks.add(new Callable<AstClass>() {
+				@Override
+				public AstClass call() {
+					return parseClass(f);
+				}
+			});
+		}
+		return invokeAll(tasks);
+	}
+
+	/**
+	 * Parse a source file, without adding its class. Can run concurrently.
+	 */
+	private AstClass parseClass(File file) {
+		GenerationProfile.Timer t = profile.startInput();
+		AstClass c = new AstClass(this, file);
+		System.out.println(file);
+		c.read(parse(file));
+		profile.input("parse", file.getPath(), t);
+		return c;
+	}
+
+	CompilationUnit parse(File file) {
 		try {
-			FileInputStream fis = new FileInputStream(file);
-			buf = FileUtils.readFully(new InputStreamReader(fis, FileUtils.UTF_8));
-			fis.close();
+			byte[] src = Files.readAllBytes(file.toPath());
+			return new JavaParser(new ByteArrayInputStream(src), FileUtils.UTF_8).CompilationUnit();
 		}
 		catch (IOException e) {
 			throw new WrappedException(e);
 		}
-		CompilationUnit node;
-		try {
-			node = JavaParser.parse(new ByteArrayInputStream(buf.toString().getBytes()));
-		}
 		catch (ParseException e) {
 			throw new WrappedException("Source: " + file, e);
 		}
-		AstClass c = new AstClass(this, file);
-		System.out.println(file);
-		c.read(node);
-		
+	}
+
+	/**
+	 * Add a class compiled by javac, its outputs are written through the filer.
+	 */
+	void addElementClass(ElementClass c) {
+		originatingElements.add(c.getElement());
+		register(c);
+	}
+
+	void setFiler(Filer f) {
+		filer = f;
+	}
+
+	boolean hasFiler() {
+		return filer != null;
+	}
+
+	/**
+	 * Write a generated source through the filer, originating from all the classes being processed.
+	 */
+	synchronized void writeSource(String name, String content) {
+		try {
+			Writer w = filer.createSourceFile(name, originatingElements.toArray(new Element[originatingElements.size()])).openWriter();
+			try {
+				w.write(content);
+			}
+			finally {
+				w.close();
+			}
+		}
+		catch (IOException e) {
+			throw new WrappedException(e);
+		}
+	}
+
+	private void register(AstClass c) {
 		if (c.getQualifiedName() == null) {
 			return;
 		}
-		
 		parsedClasses.add(c);
 		addClass(c);
 	}
 
-	void addClass(AstClass c) {
-		System.out.println("Add: " + c.getQualifiedName());
-		if (classes.put(c.getQualifiedName(), c) != null) {
-			assert false;
+	private GenerationCache openCache() {
+		File f = cacheFile;
+		if (f == null) {
+			if (genTargetRoot == null) {
+				return null;
+			}
+			genTargetRoot.mkdirs();
+			f = new File(genTargetRoot, GenerationCache.FILE_NAME);
+		}
+		StringBuilder opts = new StringBuilder();
+		for (String o : outputOptions) {
+			opts.append(o).append(' ');
+		}
+		GenerationCache c = new GenerationCache(f, opts.toString().trim());
+		if (!full) {
+			c.load();
+		}
+		return c;
+	}
+
+	/**
+	 * @return Whether the outputs of the class are to be written, true without generation cache.
+	 */
+	boolean isRegenerated(AstClass c) {
+		if (cache == null || c.getSource() == null) {
+			return cache == null;
+		}
+		GenerationCache.Entry e = cache.get(c.getSource());
+		return e != null && e.regenerate;
+	}
+
+	/**
+	 * Run the writing of the outputs of a class, recording them with its references in the generation cache.
+	 */
+	void generate(ModelClass c, Runnable write) {
+		generate(c.getSource(), true, c.getDependencies(), write);
+	}
+
+	/**
+	 * Run the writing of the outputs of a source, recording them with the classes it references.
+	 */
+	void generate(File source, boolean data, Collection<String> dependencies, Runnable write) {
+		List<File> files = new ArrayList<File>();
+		outputs.set(files);
+		try {
+			write.run();
 		}
+		finally {
+			outputs.remove();
+		}
+		if (cache == null || source == null) {
+			return;
+		}
+		GenerationCache.Entry e = cache.get(source);
+		synchronized (e) {
+			e.data = data;
+			e.dependencies.clear();
+			e.dependencies.addAll(dependencies);
+			e.outputs.clear();
+			for (File f : files) {
+				e.outputs.add(f.getAbsolutePath());
+			}
+		}
+	}
+
+	/**
+	 * @param processed Data classes processed in this generation.
+	 * @return Qualified names of all the data classes.
+	 */
+	SortedSet<String> getDataClasses(Collection<String> processed) {
+		SortedSet<String> res = cache == null ? new TreeSet<String>() : cache.getDataClasses();
+		res.addAll(processed);
+		return res;
 	}
 
-	public AstClass getClass(String n) {
+	/**
+	 * Run tasks on a pool of {@link #getThreads()} threads.
+	 * @return The results, in the order of the tasks.
+	 */
+	<T> List<T> invokeAll(List<? extends Callable<T>> tasks) {
+		List<T> res = new ArrayList<T>(tasks.size());
+		if (threads <= 1 || tasks.size() <= 1) {
+			for (Callable<T> t : tasks) {
+				try {
+					res.add(t.call());
+				}
+				catch (RuntimeException e) {
+					throw e;
+				}
+				catch (Exception e) {
+					throw new WrappedException(e);
+				}
+			}
+			return res;
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, tasks.size()));
+		try {
+			List<Future<T>> fs = new ArrayList<Future<T>>(tasks.size());
+			for (Callable<T> t : tasks) {
+				fs.add(pool.submit(t));
+			}
+			for (Future<T> f : fs) {
+				res.add(f.get());
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new WrappedException(e);
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new WrappedException(e.getCause());
+		}
+		finally {
+			pool.shutdownNow();
+		}
+		return res;
+	}
+
+	int getThreads() {
+		return threads;
+	}
+
+	synchronized void addClass(AstClass c) {
+		System.out.println("Add: " + c.getQualifiedName());
+		AstClass old = classes.put(c.getQualifiedName(), c);
+		assert old == null || !old.isParsed() && old.getSource() == null : c.getQualifiedName();
+	}
+
+	public synchronized AstClass getClass(String n) {
 		return classes.get(n);
 	}
 
-	public AstClass obtainClass(String n) {
+	public synchronized AstClass obtainClass(String n) {
 		AstClass c = classes.get(n);
 		if (c == null) {
 			System.out.println("Creating: " + n);
@@ -109,17 +356,91 @@ public class SourceModel {
 		//create the models
 		models.process();         
 
+		if (serviceAdapters) {
+			GenerationProfile.Timer t = profile.start();
+			services.process(models);
+			profile.phase("services", t);
+		}
+
 		//creating the apis
 		if (dumpControls) {
 			controls.process();
 		}
+		if (controlDispatchers) {
+			GenerationProfile.Timer t = profile.start();
+			controls.writeDispatchers();
+			profile.phase("controls", t);
+		}
+		GenerationProfile.Timer t = profile.start();
 		checkFiles();
+		if (cache != null) {
+			cache.save();
+			cacheSaved = true;
+		}
+		profile.phase("check", t);
+		profile.total("annotations");
+		profile.report();
+	}
+
+	/**
+	 * @return The profile of the generation, measuring nothing without -profile.
+	 */
+	GenerationProfile getProfile() {
+		return profile;
+	}
+
+	/**
+	 * Forget the classes and outputs, to generate again with the same options.
+	 * The generation cache of the last successful generation is kept in memory.
+	 */
+	synchronized void reset() {
+		classes.clear();
+		parsedClasses.clear();
+		generatedFiles.clear();
+		models = new ModelProcessor(this);
+		controls = new ControlProcessor(this);
+		services = new ServiceProcessor(this);
+	}
+
+	/**
+	 * @return True for the sources to load: data classes, services with -services, and controls with -controls or -dumpControls.
+	 */
+	boolean isSourceFile(String name) {
+		return name.endsWith("Data.java") || serviceAdapters && name.endsWith("Service.java")
+				|| (controlDispatchers || dumpControls) && name.endsWith("Control.java");
 	}
 
 	void warning(String msg) {
 		System.out.println("Warning: " + msg);
 	}
 
+	boolean isAmfExternalizable() {
+		return amfExternalizable;
+	}
+
+	boolean isDao() {
+		return dao;
+	}
+
+	boolean isServiceAdapters() {
+		return serviceAdapters;
+	}
+
+	boolean isServiceMetrics() {
+		return serviceMetrics;
+	}
+
+	boolean isBinaryCodecs() {
+		return binaryCodecs;
+	}
+
+	/**
+	 * @return The type ids of the data classes, null without -typeIds.
+	 */
+	TypeIds getTypeIds() {
+		return typeIdsFile == null ? null : new TypeIds(typeIdsFile);
+	}
+
 	File getTargetRoot() {
 		return genTargetRoot;
 	}
@@ -136,12 +457,16 @@ public class SourceModel {
 		return htmlTargetRoot;
 	}
 
-	File makeFile(File dir, String file) {
+	synchronized File makeFile(File dir, String file) {
 		dir.mkdirs();
 		File f = new File(dir, file);
-		if (!generatedFiles.add(f)) {
+		if (!generatedFiles.add(f.getAbsoluteFile())) {
 			warning("File " + f + " is being written twice");
 		}
+		Collection<File> o = outputs.get();
+		if (o != null) {
+			o.add(f);
+		}
 		return f;
 	}
 
@@ -186,7 +511,7 @@ public class SourceModel {
 			}
 			return true;
 		}
-		if (generatedFiles.contains(f)) {
+		if (generatedFiles.contains(f.getAbsoluteFile())) {
 			return true;
 		}
 		warning("File " + f + " is in the way, clean the output dirs");
@@ -195,6 +520,38 @@ public class SourceModel {
 	}
 
 	boolean setOption(String opt) {
+		String n = "-threads=";
+		if (opt.startsWith(n)) {
+			threads = Math.max(1, Integer.parseInt(opt.substring(n.length())));
+			return true;
+		}
+		n = "-full";
+		if (opt.equals(n)) {
+			full = true;
+			return true;
+		}
+		n = "-cache=";
+		if (opt.startsWith(n)) {
+			cacheFile = new File(opt.substring(n.length()));
+			return true;
+		}
+		n = "-profile";
+		if (opt.equals(n) || opt.startsWith(n + "=")) {
+			String f = opt.length() > n.length() ? opt.substring(n.length() + 1) : "generate-profile.json";
+			profile = new GenerationProfile(true, new File(f));
+			return true;
+		}
+		if (!setOutputOption(opt)) {
+			return false;
+		}
+		outputOptions.add(opt);
+		return true;
+	}
+
+	/**
+	 * Options changing the outputs, a change invalidates the generation cache.
+	 */
+	private boolean setOutputOption(String opt) {
 		String n = "-target=";
 		if (opt.startsWith(n)) {
 			genTargetRoot = new File(opt.substring(n.length()));
@@ -220,11 +577,46 @@ public class SourceModel {
 			dumpControls = true;
 			return true;
 		}
+		n = "-controls";
+		if (opt.equals(n)) {
+			controlDispatchers = true;
+			return true;
+		}
 		n = "-html=";
 		if (opt.startsWith(n)) {
 			htmlTargetRoot = new File(opt.substring(n.length()));
 			return true;
 		}
+		n = "-amfExternalizable";
+		if (opt.equals(n)) {
+			amfExternalizable = true;
+			return true;
+		}
+		n = "-dao";
+		if (opt.equals(n)) {
+			dao = true;
+			return true;
+		}
+		n = "-services";
+		if (opt.equals(n)) {
+			serviceAdapters = true;
+			return true;
+		}
+		n = "-serviceMetrics";
+		if (opt.equals(n)) {
+			serviceMetrics = true;
+			return true;
+		}
+		n = "-binaryCodecs";
+		if (opt.equals(n)) {
+			binaryCodecs = true;
+			return true;
+		}
+		n = "-typeIds=";
+		if (opt.startsWith(n)) {
+			typeIdsFile = new File(opt.substring(n.length()));
+			return true;
+		}
 		n = "-onlyJson";
 		if (opt.startsWith(n)) {
 			onlyJson = true;
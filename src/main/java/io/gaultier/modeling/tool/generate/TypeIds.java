@@ -0,0 +1,101 @@
+package io.gaultier.modeling.tool.generate;
+
+import java.io.*;
+import java.util.*;
+
+import io.gaultier.modeling.util.base.*;
+
+/**
+ * Numeric ids of the data classes by qualified name, kept in a file so they do not change when classes are added or removed.
+ * An id is never given again, even once its class is removed.
+ * A renamed class gets a new id: to keep its id, rename the class in the file too.
+ */
+class TypeIds {
+
+    private static final String HEADER = "# Type ids of the data classes, keep this file: a removed class keeps its id reserved";
+
+    private final File file;
+    private final Map<String, Integer> ids = new TreeMap<String, Integer>();
+    private int max;
+    private boolean changed;
+
+    TypeIds(File f) {
+        file = f;
+    }
+
+    void load() {
+        ids.clear();
+        max = 0;
+        changed = false;
+        if (!file.isFile()) {
+            return;
+        }
+        try {
+            BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(file), FileUtils.UTF_8));
+            try {
+                for (String l = r.readLine(); l != null; l = r.readLine()) {
+                    l = l.trim();
+                    if (l.isEmpty() || l.startsWith("#")) {
+                        continue;
+                    }
+                    int i = l.indexOf(' ');
+                    if (i < 0) {
+                        throw new IllegalArgumentException(file + ": invalid line " + l);
+                    }
+                    int id = Integer.parseInt(l.substring(0, i));
+                    if (ids.put(l.substring(i + 1).trim(), id) != null) {
+                        throw new IllegalArgumentException(file + ": duplicate class " + l);
+                    }
+                    max = Math.max(max, id);
+                }
+            }
+            finally {
+                r.close();
+            }
+        }
+        catch (IOException e) {
+            throw new WrappedException(e);
+        }
+    }
+
+    /**
+     * @return The id of the class, a new one if it has none yet.
+     */
+    int get(String className) {
+        Integer id = ids.get(className);
+        if (id == null) {
+            id = ++max;
+            ids.put(className, id);
+            changed = true;
+        }
+        return id;
+    }
+
+    /**
+     * Write the ids if new ones were given.
+     */
+    void save() {
+        if (!changed) {
+            return;
+        }
+        List<Map.Entry<String, Integer>> es = new ArrayList<Map.Entry<String, Integer>>(ids.entrySet());
+        Collections.sort(es, new Comparator<Map.Entry<String, Integer>>() {
+            @Override
+            public int compare(Map.Entry<String, Integer> a, Map.Entry<String, Integer> b) {
+                return a.getValue().compareTo(b.getValue());
+            }
+        });
+        StringBuilder b = new StringBuilder();
+        b.append(HEADER).append('\n');
+        for (Map.Entry<String, Integer> e : es) {
+            b.append(e.getValue()).append(' ').append(e.getKey()).append('\n');
+        }
+        try {
+            FileUtils.writeTo(new ByteBufferStream(FileUtils.stringToBytes(b.toString(), FileUtils.UTF_8)), file);
+        }
+        catch (IOException e) {
+            throw new WrappedException(e);
+        }
+        changed = false;
+    }
+}
@@ -1,12 +1,13 @@
 package io.gaultier.modeling.util;
 
-import java.text.*;
 import java.util.*;
 
 import org.json.*;
 
 import io.gaultier.modeling.model.data.DataDefinition;
 import io.gaultier.modeling.model.data.DataList;
+import io.gaultier.modeling.model.data.DataType;
+import io.gaultier.modeling.model.data.DateTimeCodec;
 import io.gaultier.modeling.model.data.FieldDefinition;
 import io.gaultier.modeling.model.data.FieldType;
 import io.gaultier.modeling.model.data.ModelData;
@@ -70,7 +71,13 @@ public class JsonHelper {
         }
         else {
             assert type.getType() != null : f;
-            value = type.getType().fromString(v + "", new SimpleDateFormat("yyyy-MM-dd"));
+            DateTimeCodec codec = type.getDateTimeCodec();
+            if (codec == null && type.getType() == DataType.DATETIME) {
+                value = DateTimeCodec.DAY.parseLenient(v + "");
+            }
+            else {
+                value = type.getType().fromString(v + "", codec);
+            }
         }
         return value;
     }
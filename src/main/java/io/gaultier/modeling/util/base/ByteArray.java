@@ -2,6 +2,7 @@ package io.gaultier.modeling.util.base;
 
 import java.io.*;
 import java.nio.*;
+import java.nio.channels.*;
 
 public interface ByteArray extends Cloneable, Comparable<ByteArray> {
 
@@ -13,6 +14,8 @@ public interface ByteArray extends Cloneable, Comparable<ByteArray> {
 
     void writeTo(OutputStream os) throws IOException;
 
+    void writeTo(WritableByteChannel ch) throws IOException;
+
     byte[] toByteArray();
 
     /**
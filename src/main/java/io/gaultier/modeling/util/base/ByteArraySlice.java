@@ -0,0 +1,167 @@
+package io.gaultier.modeling.util.base;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+/**
+ * Read-only view of a range of a buffer, sharing it without copy.
+ * The view sees later changes of the buffer, so only slice content that no longer changes:
+ * the content hash is computed once.
+ */
+public final class ByteArraySlice implements ByteArray, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] buf;
+    private final int offset;
+    private final int length;
+    private transient int hash;
+
+    public ByteArraySlice(byte[] buffer, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > buffer.length) {
+            throw new IndexOutOfBoundsException(offset + "+" + length + " in byte[" + buffer.length + "]");
+        }
+        buf = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * View of the remaining content of a heap buffer, copied if the buffer has no accessible array.
+     * The position of the buffer is not changed.
+     * @param bb Buffer.
+     * @return View.
+     */
+    public static ByteArraySlice wrap(ByteBuffer bb) {
+        if (bb.hasArray()) {
+            return new ByteArraySlice(bb.array(), bb.arrayOffset() + bb.position(), bb.remaining());
+        }
+        byte[] b = new byte[bb.remaining()];
+        bb.duplicate().get(b);
+        return new ByteArraySlice(b, 0, b.length);
+    }
+
+    byte[] getBuffer() {
+        return buf;
+    }
+
+    int getOffset() {
+        return offset;
+    }
+
+    @Override
+    public byte byteAt(int index) {
+        assert index >= 0 && index < length : index;
+        return buf[offset + index];
+    }
+
+    @Override
+    public int size() {
+        return length;
+    }
+
+    @Override
+    public InputStream getInput() {
+        return new ByteArrayInputStream(buf, offset, length);
+    }
+
+    @Override
+    public void writeTo(OutputStream os) throws IOException {
+        os.write(buf, offset, length);
+    }
+
+    @Override
+    public void writeTo(WritableByteChannel ch) throws IOException {
+        ByteBuffer b = ByteBuffer.wrap(buf, offset, length);
+        while (b.hasRemaining()) {
+            ch.write(b);
+        }
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        return Arrays.copyOfRange(buf, offset, offset + length);
+    }
+
+    @Override
+    public byte[] toByteArrayUnsafe() {
+        if (offset == 0 && length == buf.length) {
+            return buf;
+        }
+        return toByteArray();
+    }
+
+    @Override
+    public String toString(int off, int len, String charset) {
+        assert off >= 0 && off + len <= length;
+        try {
+            return new String(buf, offset + off, len, charset);
+        } catch (UnsupportedEncodingException e) {
+            throw new WrappedException(e);
+        }
+    }
+
+    @Override
+    public String toString(String charset) {
+        return toString(0, length, charset);
+    }
+
+    @Override
+    public String toStringRepresentation() {
+        return ByteArrays.toStringRepresentation(this, false);
+    }
+
+    @Override
+    public String toHexRepresentation(boolean pretty) {
+        return toHexRepresentation(pretty, true);
+    }
+
+    @Override
+    public String toHexRepresentation(boolean pretty, boolean full) {
+        return ByteArrays.toHexRepresentation(this, pretty, full);
+    }
+
+    /**
+     * @return A mutable copy.
+     */
+    @Override
+    public ByteBufferStream clone() {
+        return new ByteBufferStream(toByteArray());
+    }
+
+    @Override
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(buf, offset, length).slice().asReadOnlyBuffer();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ByteArray && ByteArrays.equals(this, (ByteArray) o);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0 && length != 0) {
+            h = ByteArrays.hashCode(buf, offset, length);
+            hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public int compareTo(ByteArray o) {
+        return ByteArrays.compare(this, o);
+    }
+
+    @Override
+    public String toString() {
+        return "byte[" + length + "]";
+    }
+
+    private Object writeReplace() {
+        return clone();
+    }
+}
@@ -0,0 +1,184 @@
+package io.gaultier.modeling.util.base;
+
+/**
+ * Content operations on {@link ByteArray}s of any implementation, without copying them.
+ * Heap backed arrays are compared on their buffers, direct ones through buffer views, the others byte by byte.
+ */
+public final class ByteArrays {
+
+    private ByteArrays() {
+    }
+
+    public static boolean equals(ByteArray a, ByteArray b) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null) {
+            return false;
+        }
+        int len = a.size();
+        if (len != b.size()) {
+            return false;
+        }
+        byte[] ab = heapBuffer(a);
+        byte[] bb = heapBuffer(b);
+        if (ab != null && bb != null) {
+            return mismatch(ab, heapOffset(a), bb, heapOffset(b), len) < 0;
+        }
+        if (a instanceof DirectByteArray && b instanceof DirectByteArray) {
+            return a.asByteBuffer().equals(b.asByteBuffer());
+        }
+        for (int i = 0; i < len; i++) {
+            if (a.byteAt(i) != b.byteAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Same value as {@link java.util.Arrays#hashCode(byte[])} of the content.
+     */
+    public static int hashCode(ByteArray a) {
+        byte[] buf = heapBuffer(a);
+        if (buf != null) {
+            return hashCode(buf, heapOffset(a), a.size());
+        }
+        int h = 1;
+        for (int i = 0, len = a.size(); i < len; i++) {
+            h = 31 * h + a.byteAt(i);
+        }
+        return h;
+    }
+
+    /**
+     * Lexicographic comparison of unsigned bytes, a prefix being lower.
+     */
+    public static int compare(ByteArray a, ByteArray b) {
+        int la = a.size();
+        int lb = b.size();
+        int len = Math.min(la, lb);
+        byte[] ab = heapBuffer(a);
+        byte[] bb = heapBuffer(b);
+        if (ab != null && bb != null) {
+            int oa = heapOffset(a);
+            int ob = heapOffset(b);
+            int i = mismatch(ab, oa, bb, ob, len);
+            if (i >= 0) {
+                return (ab[oa + i] & 0xff) < (bb[ob + i] & 0xff) ? -1 : 1;
+            }
+        }
+        else {
+            for (int i = 0; i < len; i++) {
+                int va = a.byteAt(i) & 0xff;
+                int vb = b.byteAt(i) & 0xff;
+                if (va != vb) {
+                    return va < vb ? -1 : 1;
+                }
+            }
+        }
+        return la == lb ? 0 : la < lb ? -1 : 1;
+    }
+
+    /**
+     * @return Index of the first different byte in the ranges, -1 if they are equal.
+     */
+    static int mismatch(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        if (a == b && aOffset == bOffset) {
+            return -1;
+        }
+        for (int i = 0; i < length; i++) {
+            if (a[aOffset + i] != b[bOffset + i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static int hashCode(byte[] buf, int offset, int length) {
+        int h = 1;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            h = 31 * h + buf[i];
+        }
+        return h;
+    }
+
+    private static byte[] heapBuffer(ByteArray a) {
+        if (a instanceof ByteBufferStream) {
+            return ((ByteBufferStream) a).getBuffer();
+        }
+        if (a instanceof ByteArraySlice) {
+            return ((ByteArraySlice) a).getBuffer();
+        }
+        return null;
+    }
+
+    private static int heapOffset(ByteArray a) {
+        if (a instanceof ByteArraySlice) {
+            return ((ByteArraySlice) a).getOffset();
+        }
+        return 0;
+    }
+
+    static String toStringRepresentation(ByteArray a, boolean force) {
+        int size = a.size();
+        int n = 0;
+        for (int i = size; i-- > 0;) {
+            byte b = a.byteAt(i);
+            if (b < 32 || b >= 127) {
+                n++;
+            }
+        }
+        if (!force && size != 0 && n * 10 > size) {
+            return a.toHexRepresentation(true);
+        }
+        StringBuilder t = new StringBuilder(size * 2 + size / 4 + 2);
+        t.append('[');
+        for (int i = 0; i < size; i++) {
+            int l = a.byteAt(i);
+            if (l < 32 || l >= 127) {
+                int h = l;
+                l &= 0xf;
+                h >>= 4;
+                h &= 0xf;
+                t.append('\\');
+                t.append((char) (h < 10 ? h + '0' : h - 10 + 'a'));
+                t.append((char) (l < 10 ? l + '0' : l - 10 + 'a'));
+            } else if (l == '\\') {
+                t.append("\\\\");
+            } else {
+                t.append((char) l);
+            }
+        }
+        t.append(']');
+        return t.toString();
+    }
+
+    static String toHexRepresentation(ByteArray a, boolean pretty, boolean full) {
+        int size = a.size();
+        StringBuilder t = new StringBuilder(size * 2 + size / 4 + 2);
+        if (pretty) {
+            t.append('[');
+        }
+        for (int i = 0; i < size; i++) {
+            if (!full && i >= 0x1000) {
+                t.append("… (").append(size).append(" total bytes)");
+                break;
+            }
+            if (pretty && i != 0 && (i % 4) == 0) {
+                t.append(' ');
+            }
+            int l = a.byteAt(i);
+            int h = l;
+            l &= 0xf;
+            h >>= 4;
+            h &= 0xf;
+            t.append((char) (h < 10 ? h + '0' : h - 10 + 'a'));
+            t.append((char) (l < 10 ? l + '0' : l - 10 + 'a'));
+        }
+        if (pretty) {
+            t.append(']');
+        }
+        return t.toString();
+    }
+}
@@ -2,6 +2,7 @@ package io.gaultier.modeling.util.base;
 
 import java.io.*;
 import java.nio.*;
+import java.nio.channels.*;
 import java.nio.charset.*;
 import java.util.*;
 
@@ -9,6 +10,10 @@ public final class ByteBufferStream extends OutputStream implements Serializable
 
     private byte[] buf;
     private int outIndex;
+    /**
+     * True while in a {@link ByteBufferStreamPool}.
+     */
+    transient boolean pooled;
 
     public ByteBufferStream() {
         this(0x100);
@@ -146,6 +151,14 @@ public final class ByteBufferStream extends OutputStream implements Serializable
         os.write(buf, 0, outIndex);
     }
 
+    @Override
+    public void writeTo(WritableByteChannel ch) throws IOException {
+        ByteBuffer b = ByteBuffer.wrap(buf, 0, outIndex);
+        while (b.hasRemaining()) {
+            ch.write(b);
+        }
+    }
+
     public void writeTo(DataOutput os) throws IOException {
         os.write(buf, 0, outIndex);
     }
@@ -277,36 +290,7 @@ public final class ByteBufferStream extends OutputStream implements Serializable
     }
 
     public String toStringRepresentation(boolean force) {
-        int n = 0;
-        for (int i = outIndex; i-- > 0;) {
-            byte b = byteAt(i);
-            if (b < 32 || b >= 127) {
-                n++;
-            }
-        }
-        if (!force && outIndex != 0 && n * 10 > outIndex) {
-            return toHexRepresentation(true);
-        }
-        StringBuilder t = new StringBuilder(outIndex * 2 + outIndex / 4 + 2);
-        t.append('[');
-        for (int i = 0; i < outIndex; i++) {
-            int l = byteAt(i);
-            if (l < 32 || l >= 127) {
-                int h = l;
-                l &= 0xf;
-                h >>= 4;
-                h &= 0xf;
-                t.append('\\');
-                t.append((char) (h < 10 ? h + '0' : h - 10 + 'a'));
-                t.append((char) (l < 10 ? l + '0' : l - 10 + 'a'));
-            } else if (l == '\\') {
-                t.append("\\\\");
-            } else {
-                t.append((char) l);
-            }
-        }
-        t.append(']');
-        return t.toString();
+        return ByteArrays.toStringRepresentation(this, force);
     }
 
     @Override
@@ -322,30 +306,7 @@ public final class ByteBufferStream extends OutputStream implements Serializable
      */
     @Override
     public String toHexRepresentation(boolean pretty, boolean full) {
-        StringBuilder t = new StringBuilder(outIndex * 2 + outIndex / 4 + 2);
-        if (pretty) {
-            t.append('[');
-        }
-        for (int i = 0; i < outIndex; i++) {
-            if (!full && i >= 0x1000) {
-                t.append("… (").append(outIndex).append(" total bytes)");
-                break;
-            }
-            if (pretty && i != 0 && (i % 4) == 0) {
-                t.append(' ');
-            }
-            int l = byteAt(i);
-            int h = l;
-            l &= 0xf;
-            h >>= 4;
-            h &= 0xf;
-            t.append((char) (h < 10 ? h + '0' : h - 10 + 'a'));
-            t.append((char) (l < 10 ? l + '0' : l - 10 + 'a'));
-        }
-        if (pretty) {
-            t.append(']');
-        }
-        return t.toString();
+        return ByteArrays.toHexRepresentation(this, pretty, full);
     }
 
     private static int parseHexDigit(char c) {
@@ -409,56 +370,28 @@ public final class ByteBufferStream extends OutputStream implements Serializable
     }
 
     /**
-     * Warning : this method is inefficient.
+     * Content equality with any {@link ByteArray}.
      */
     @Override
     public boolean equals(Object o) {
-        if (o == this) {
-            return true;
-        }
-        if (o == null) {
-            return false;
-        }
-        if (!(o instanceof ByteBufferStream)) {
-            return false;
-        }
-        ByteBufferStream bbs = (ByteBufferStream) o;
-        if (outIndex != bbs.outIndex) {
-            return false;
-        }
-        return Arrays.equals(outIndex == buf.length ? buf : Arrays.copyOf(buf, outIndex), bbs.outIndex == bbs.buf.length ? bbs.buf : Arrays.copyOf(bbs.buf, bbs.outIndex));
+        return o instanceof ByteArray && ByteArrays.equals(this, (ByteArray) o);
     }
 
     /**
-     * Warning : this method is inefficient.
+     * Computed on the content each time, as it may change.
      */
     @Override
     public int hashCode() {
-        return Arrays.hashCode(outIndex == buf.length ? buf : Arrays.copyOf(buf, outIndex));
+        return ByteArrays.hashCode(buf, 0, outIndex);
     }
 
     @Override
     public int compareTo(ByteArray o) {
-        return compareTo((ByteBufferStream) o);
+        return ByteArrays.compare(this, o);
     }
 
-    /**
-     * Warning : this method is inefficient.
-     */
     public int compareTo(ByteBufferStream o) {
-        int len = Math.min(outIndex, o.outIndex);
-        for (int i = 0; i < len; i++) {
-            if (buf[i] != o.buf[i]) {
-                return (buf[i] & 0xff) < (o.buf[i] & 0xff) ? -1 : 1;
-            }
-        }
-        if (outIndex > len) {
-            return 1;
-        }
-        if (o.outIndex > len) {
-            return -1;
-        }
-        return 0;
+        return ByteArrays.compare(this, o);
     }
 
     public static class Input extends InputStream {
@@ -536,6 +469,11 @@ public final class ByteBufferStream extends OutputStream implements Serializable
         }
     }
 
+    /**
+     * Copy the remaining content of the buffer, see {@link ByteArraySlice#wrap(ByteBuffer)} for a view.
+     * @param bb Buffer, its position is moved to its limit.
+     * @return A new stream.
+     */
     public static ByteBufferStream fromByteBuffer(ByteBuffer bb) {
         ByteBufferStream bbs = new ByteBufferStream(bb.remaining());
         bbs.outIndex = bbs.buf.length;
@@ -543,9 +481,24 @@ public final class ByteBufferStream extends OutputStream implements Serializable
         return bbs;
     }
 
+    /**
+     * Copy a range of this buffer, see {@link #slice(int, int)} for a view.
+     */
     public ByteBufferStream subbuffer(int beginIndex, int endIndex) {
         ByteBufferStream b = new ByteBufferStream(endIndex - beginIndex);
         b.write(getBuffer(), beginIndex, endIndex - beginIndex);
         return b;
     }
+
+    /**
+     * Read-only view of a range of this buffer, without copy.
+     * The view is invalid once this stream grows or changes the range.
+     * @param beginIndex First byte.
+     * @param endIndex End of range (excluded).
+     * @return View.
+     */
+    public ByteArraySlice slice(int beginIndex, int endIndex) {
+        assert endIndex <= outIndex : endIndex + " > " + outIndex;
+        return new ByteArraySlice(buf, beginIndex, endIndex - beginIndex);
+    }
 }
@@ -0,0 +1,99 @@
+package io.gaultier.modeling.util.base;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * Reusable {@link ByteBufferStream}s, so serializers stop growing a new buffer for each payload.
+ * The pool is a fixed array of slots taken and returned with compare and set: it never blocks,
+ * allocates nothing, and does not depend on thread locals (fit for virtual threads).
+ * <p>
+ * A stream must be released once, and must not be used after: copy its content out before.
+ * <pre>
+ * ByteBufferStream b = pool.acquire(def.getSerializedSizeHint());
+ * try {
+ *     ...
+ * } finally {
+ *     pool.release(b, def.getSerializedSizeHint());
+ * }
+ * </pre>
+ */
+public final class ByteBufferStreamPool {
+
+    private static final ByteBufferStreamPool SHARED = new ByteBufferStreamPool(64, 0x100000);
+    private static final int PROBES = 8;
+
+    private final AtomicReferenceArray<ByteBufferStream> slots;
+    private final int mask;
+    private final int maxRetainedCapacity;
+
+    /**
+     * @param size Number of slots, rounded up to a power of two.
+     * @param maxRetained Bigger buffers are dropped instead of being kept.
+     */
+    public ByteBufferStreamPool(int size, int maxRetained) {
+        int n = Integer.highestOneBit(Math.max(1, size * 2 - 1));
+        slots = new AtomicReferenceArray<ByteBufferStream>(n);
+        mask = n - 1;
+        maxRetainedCapacity = maxRetained;
+    }
+
+    public static ByteBufferStreamPool get() {
+        return SHARED;
+    }
+
+    /**
+     * @param capacity Capacity needed.
+     * @return An empty stream.
+     */
+    public ByteBufferStream acquire(int capacity) {
+        int start = probeStart();
+        for (int i = 0; i < PROBES; i++) {
+            int j = (start + i) & mask;
+            ByteBufferStream b = slots.get(j);
+            if (b != null && slots.compareAndSet(j, b, null)) {
+                b.pooled = false;
+                b.ensure(capacity);
+                return b;
+            }
+        }
+        return new ByteBufferStream(capacity);
+    }
+
+    public ByteBufferStream acquire(SizeHint hint) {
+        return acquire(hint.get());
+    }
+
+    /**
+     * Return a stream to the pool.
+     * @param b Stream, not to be used anymore.
+     */
+    public void release(ByteBufferStream b) {
+        assert !b.pooled : "Released twice";
+        if (b.pooled || b.getCapacity() > maxRetainedCapacity) {
+            return;
+        }
+        b.pooled = true;
+        b.reset();
+        int start = probeStart();
+        for (int i = 0; i < PROBES; i++) {
+            int j = (start + i) & mask;
+            if (slots.get(j) == null && slots.compareAndSet(j, null, b)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Record the final size of the payload in the hint, then return the stream to the pool.
+     */
+    public void release(ByteBufferStream b, SizeHint hint) {
+        hint.record(b.size());
+        release(b);
+    }
+
+    private int probeStart() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+}
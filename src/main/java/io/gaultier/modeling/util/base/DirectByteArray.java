@@ -0,0 +1,311 @@
+package io.gaultier.modeling.util.base;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Growable byte array held in direct memory, out of the Java heap: big payloads
+ * do not end up in humongous heap regions.
+ * <p>
+ * {@link #release()} returns the memory to a small cache of direct buffers for the next arrays.
+ * The array cannot be used after. Arrays that are not released are freed by the garbage collector.
+ */
+public final class DirectByteArray extends OutputStream implements ByteArray {
+
+    private static final int MIN_CAPACITY = 0x1000;
+    private static final int CACHED_CLASSES = 9;
+    private static final int CACHED_PER_CLASS = 4;
+    private static final AtomicReferenceArray<ByteBuffer> CACHE = new AtomicReferenceArray<ByteBuffer>(CACHED_CLASSES * CACHED_PER_CLASS);
+
+    private ByteBuffer buf;
+    private final boolean owned;
+
+    public DirectByteArray() {
+        this(MIN_CAPACITY);
+    }
+
+    public DirectByteArray(int capacity) {
+        buf = allocate(capacity);
+        owned = true;
+    }
+
+    private DirectByteArray(ByteBuffer content) {
+        buf = content;
+        owned = false;
+    }
+
+    /**
+     * Read-only array over the remaining content of a buffer, without copy.
+     * The buffer is not recycled on {@link #release()}.
+     * @param bb Buffer, typically direct or mapped.
+     * @return View.
+     */
+    public static DirectByteArray wrap(ByteBuffer bb) {
+        ByteBuffer b = bb.slice().asReadOnlyBuffer();
+        b.position(b.limit());
+        return new DirectByteArray(b);
+    }
+
+    public static DirectByteArray copyOf(ByteArray a) {
+        DirectByteArray d = new DirectByteArray(a.size());
+        d.buf.put(a.asByteBuffer());
+        return d;
+    }
+
+    private ByteBuffer buffer() {
+        ByteBuffer b = buf;
+        if (b == null) {
+            throw new IllegalStateException("Released");
+        }
+        return b;
+    }
+
+    /**
+     * Give the memory back for reuse. Does nothing if already released.
+     */
+    public void release() {
+        ByteBuffer b = buf;
+        buf = null;
+        if (b != null && owned) {
+            recycle(b);
+        }
+    }
+
+    public boolean isReleased() {
+        return buf == null;
+    }
+
+    public int getCapacity() {
+        return buffer().capacity();
+    }
+
+    public void reset() {
+        buffer().clear();
+    }
+
+    public void ensure(int len) {
+        ByteBuffer b = buffer();
+        if (b.remaining() >= len) {
+            return;
+        }
+        if (!owned) {
+            throw new ReadOnlyBufferException();
+        }
+        ByteBuffer n = allocate(b.position() + len);
+        b.flip();
+        n.put(b);
+        recycle(b);
+        buf = n;
+    }
+
+    @Override
+    public void write(int b) {
+        ensure(1);
+        buf.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensure(len);
+        buf.put(b, off, len);
+    }
+
+    public void write(ByteBuffer b) {
+        ensure(b.remaining());
+        buf.put(b);
+    }
+
+    @Override
+    public byte byteAt(int index) {
+        assert index >= 0 && index < size() : index;
+        return buffer().get(index);
+    }
+
+    @Override
+    public int size() {
+        return buffer().position();
+    }
+
+    @Override
+    public InputStream getInput() {
+        final ByteBuffer b = asByteBuffer();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return b.hasRemaining() ? b.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] t, int off, int len) {
+                if (len == 0) {
+                    return 0;
+                }
+                if (!b.hasRemaining()) {
+                    return -1;
+                }
+                len = Math.min(len, b.remaining());
+                b.get(t, off, len);
+                return len;
+            }
+
+            @Override
+            public long skip(long n) {
+                int k = (int) Math.max(0, Math.min(n, b.remaining()));
+                b.position(b.position() + k);
+                return k;
+            }
+
+            @Override
+            public int available() {
+                return b.remaining();
+            }
+        };
+    }
+
+    @Override
+    public void writeTo(OutputStream os) throws IOException {
+        if (os instanceof FileOutputStream) {
+            writeTo(((FileOutputStream) os).getChannel());
+            return;
+        }
+        ByteBuffer b = asByteBuffer();
+        byte[] t = new byte[Math.min(b.remaining(), 0x2000)];
+        while (b.hasRemaining()) {
+            int n = Math.min(t.length, b.remaining());
+            b.get(t, 0, n);
+            os.write(t, 0, n);
+        }
+    }
+
+    @Override
+    public void writeTo(WritableByteChannel ch) throws IOException {
+        ByteBuffer b = asByteBuffer();
+        while (b.hasRemaining()) {
+            ch.write(b);
+        }
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        byte[] t = new byte[size()];
+        asByteBuffer().get(t);
+        return t;
+    }
+
+    /**
+     * @return A copy, the content is not on the heap.
+     */
+    @Override
+    public byte[] toByteArrayUnsafe() {
+        return toByteArray();
+    }
+
+    @Override
+    public String toString(int offset, int length, String charset) {
+        assert offset >= 0 && offset + length <= size();
+        byte[] t = new byte[length];
+        ByteBuffer b = asByteBuffer();
+        b.position(offset);
+        b.get(t);
+        return FileUtils.bytesToString(t, charset);
+    }
+
+    @Override
+    public String toString(String charset) {
+        return toString(0, size(), charset);
+    }
+
+    @Override
+    public String toStringRepresentation() {
+        return ByteArrays.toStringRepresentation(this, false);
+    }
+
+    @Override
+    public String toHexRepresentation(boolean pretty) {
+        return toHexRepresentation(pretty, true);
+    }
+
+    @Override
+    public String toHexRepresentation(boolean pretty, boolean full) {
+        return ByteArrays.toHexRepresentation(this, pretty, full);
+    }
+
+    /**
+     * @return A writable copy, also in direct memory.
+     */
+    @Override
+    public DirectByteArray clone() {
+        return copyOf(this);
+    }
+
+    /**
+     * @return A read-only view of the content, valid until {@link #release()}.
+     */
+    @Override
+    public ByteBuffer asByteBuffer() {
+        ByteBuffer b = buffer().duplicate();
+        b.flip();
+        return b.asReadOnlyBuffer();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ByteArray && ByteArrays.equals(this, (ByteArray) o);
+    }
+
+    @Override
+    public int hashCode() {
+        return ByteArrays.hashCode(this);
+    }
+
+    @Override
+    public int compareTo(ByteArray o) {
+        return ByteArrays.compare(this, o);
+    }
+
+    @Override
+    public String toString() {
+        return buf == null ? "direct byte[released]" : "direct byte[" + size() + "]";
+    }
+
+    private static int sizeClass(int capacity) {
+        int c = Integer.numberOfTrailingZeros(capacity) - Integer.numberOfTrailingZeros(MIN_CAPACITY);
+        return c < CACHED_CLASSES ? c : -1;
+    }
+
+    private static ByteBuffer allocate(int len) {
+        int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(len));
+        if (capacity < len) {
+            capacity <<= 1;
+        }
+        int c = sizeClass(capacity);
+        if (c >= 0) {
+            for (int i = c * CACHED_PER_CLASS, end = i + CACHED_PER_CLASS; i < end; i++) {
+                ByteBuffer b = CACHE.get(i);
+                if (b != null && CACHE.compareAndSet(i, b, null)) {
+                    b.clear();
+                    return b;
+                }
+            }
+        }
+        return ByteBuffer.allocateDirect(capacity);
+    }
+
+    private static void recycle(ByteBuffer b) {
+        int capacity = b.capacity();
+        if (Integer.bitCount(capacity) != 1 || capacity < MIN_CAPACITY) {
+            return;
+        }
+        int c = sizeClass(capacity);
+        if (c < 0) {
+            return;
+        }
+        for (int i = c * CACHED_PER_CLASS, end = i + CACHED_PER_CLASS; i < end; i++) {
+            if (CACHE.get(i) == null && CACHE.compareAndSet(i, null, b)) {
+                return;
+            }
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package io.gaultier.modeling.util.base;
 
 import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
 import java.security.*;
 import java.util.*;
 
@@ -41,7 +43,7 @@ public final class FileUtils {
     public static ByteBufferStream readInto(File f, ByteBufferStream bbs) throws IOException {
         FileInputStream fis = new FileInputStream(f);
         try {
-            bbs.appendFullyFrom(fis);
+            readInto(fis.getChannel(), bbs);
         }
         finally {
             fis.close();
@@ -49,6 +51,163 @@ public final class FileUtils {
         return bbs;
     }
 
+    /**
+     * Append the content of a channel until EOF, reading straight into the buffer.
+     * File channels are read after sizing the buffer once from their size.
+     * @param ch Source, not closed.
+     * @param bbs Target.
+     * @return The target.
+     */
+    public static ByteBufferStream readInto(ReadableByteChannel ch, ByteBufferStream bbs) throws IOException {
+        if (ch instanceof FileChannel) {
+            FileChannel fc = (FileChannel) ch;
+            long remaining = fc.size() - fc.position();
+            if (remaining > Integer.MAX_VALUE - 8 - bbs.size()) {
+                throw new IOException("Too large for a buffer: " + remaining);
+            }
+            bbs.ensure((int) remaining);
+            while (remaining > 0) {
+                int r = fc.read(ByteBuffer.wrap(bbs.getBuffer(), bbs.size(), (int) remaining));
+                if (r < 0) {
+                    return bbs;
+                }
+                bbs.moveSize(r);
+                remaining -= r;
+            }
+            // Files like those of /proc report a size of 0, their content is read until EOF
+            if (fc.size() > 0 && fc.position() >= fc.size()) {
+                return bbs;
+            }
+        }
+        for (;;) {
+            if (bbs.getFreeCapacity() < 0x1000) {
+                bbs.ensure(0x1000);
+            }
+            int r = ch.read(ByteBuffer.wrap(bbs.getBuffer(), bbs.size(), bbs.getFreeCapacity()));
+            if (r < 0) {
+                return bbs;
+            }
+            bbs.moveSize(r);
+        }
+    }
+
+    /**
+     * Map a file read-only in memory, without reading it.
+     * The view stays valid after the file is closed, until it is garbage collected.
+     * @param f File smaller than 2 GB.
+     * @return Read-only view of the content.
+     */
+    public static DirectByteArray map(File f) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(f, "r");
+        try {
+            FileChannel ch = raf.getChannel();
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Too large to map: " + f + " " + size);
+            }
+            return DirectByteArray.wrap(ch.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Copy a file with channel transfers, that the system may do without going through user space.
+     * @return Number of bytes copied.
+     */
+    public static long copy(File from, File to) throws IOException {
+        FileInputStream in = new FileInputStream(from);
+        try {
+            FileOutputStream out = new FileOutputStream(to);
+            try {
+                return transfer(in.getChannel(), out.getChannel());
+            }
+            finally {
+                out.close();
+            }
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Copy a file to a stream, not closed.
+     * @return Number of bytes copied.
+     */
+    public static long copy(File from, OutputStream os) throws IOException {
+        FileInputStream in = new FileInputStream(from);
+        try {
+            WritableByteChannel out = os instanceof FileOutputStream ? ((FileOutputStream) os).getChannel() : Channels.newChannel(os);
+            return transfer(in.getChannel(), out);
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Copy a stream, not closed, to a file.
+     * @return Number of bytes copied.
+     */
+    public static long copy(InputStream is, File to) throws IOException {
+        FileOutputStream out = new FileOutputStream(to);
+        try {
+            if (is instanceof FileInputStream) {
+                return transfer(((FileInputStream) is).getChannel(), out.getChannel());
+            }
+            ReadableByteChannel in = Channels.newChannel(is);
+            FileChannel fc = out.getChannel();
+            long total = 0;
+            for (;;) {
+                long n = fc.transferFrom(in, total, 0x100000);
+                if (n <= 0) {
+                    return total;
+                }
+                total += n;
+            }
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Transfer the remaining content of a file channel.
+     * What transferTo does not transfer, like the content of a FIFO or of a file reporting a size of 0, is copied until EOF.
+     * @return Number of bytes transferred.
+     */
+    private static long transfer(FileChannel in, WritableByteChannel out) throws IOException {
+        long start = in.position();
+        long end = in.size();
+        long pos = start;
+        while (pos < end) {
+            long n = in.transferTo(pos, end - pos, out);
+            if (n <= 0) {
+                break;
+            }
+            pos += n;
+        }
+        in.position(pos);
+        if (end > 0 && pos >= end) {
+            return pos - start;
+        }
+        ByteBuffer b = ByteBuffer.allocate(0x10000);
+        for (;;) {
+            int r = in.read(b);
+            if (r < 0) {
+                return pos - start;
+            }
+            b.flip();
+            while (b.hasRemaining()) {
+                out.write(b);
+            }
+            b.clear();
+            pos += r;
+        }
+    }
+
     public static <T extends Appendable> T readInto(File f, T a) {
         try {
             InputStream is = FileUtils.open(f);
@@ -72,10 +231,13 @@ public final class FileUtils {
         return a;
     }
 
-    public static void writeTo(ByteBufferStream bbs, File f) throws IOException {
+    /**
+     * Write the content to a file through its channel, direct arrays are not copied to the heap.
+     */
+    public static void writeTo(ByteArray a, File f) throws IOException {
         FileOutputStream fos = new FileOutputStream(f);
         try {
-            bbs.writeTo(fos);
+            a.writeTo(fos.getChannel());
         }
         finally {
             fos.close();
@@ -88,8 +250,11 @@ public final class FileUtils {
      * @return Builder containing the content of the reader.
      */
     public static StringBuilder readFully(Reader r) throws IOException {
-        char[] buf = new char[4096];
-        StringBuilder b = new StringBuilder(buf.length);
+        return readFully(r, new StringBuilder(4096));
+    }
+
+    private static StringBuilder readFully(Reader r, StringBuilder b) throws IOException {
+        char[] buf = new char[8192];
         int i;
         while ((i = r.read(buf)) > 0) {
             b.append(buf, 0, i);
@@ -97,13 +262,30 @@ public final class FileUtils {
         return b;
     }
 
+    /**
+     * Read a whole UTF-8 file, into a builder sized from the file length.
+     */
     public static StringBuilder readFullyUTF8(File f) throws IOException {
-        Reader r = new BufferedReader(new InputStreamReader(new FileInputStream(f), FileUtils.UTF_8));
-        return readFully(r);
+        long len = f.length();
+        Reader r = new InputStreamReader(new FileInputStream(f), FileUtils.UTF_8);
+        try {
+            return readFully(r, new StringBuilder((int) Math.min(Math.max(len, 16), Integer.MAX_VALUE - 8)));
+        }
+        finally {
+            r.close();
+        }
     }
 
+    /**
+     * Copy the remaining content of a stream to another, none is closed.
+     * Between file streams the copy is a channel transfer.
+     */
     public static void readFully(InputStream is, OutputStream os) throws IOException {
-        byte[] buf = new byte[4096];
+        if (is instanceof FileInputStream && os instanceof FileOutputStream) {
+            transfer(((FileInputStream) is).getChannel(), ((FileOutputStream) os).getChannel());
+            return;
+        }
+        byte[] buf = new byte[8192];
         int i;
         while ((i = is.read(buf)) > 0) {
             os.write(buf, 0, i);
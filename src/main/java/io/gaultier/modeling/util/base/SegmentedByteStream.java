@@ -0,0 +1,308 @@
+package io.gaultier.modeling.util.base;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+/**
+ * Byte stream for big payloads, appended in fixed size chunks: growing never copies the content,
+ * and needs no transient double footprint.
+ * <p>
+ * The content is not contiguous: {@link #asByteBuffer()}, {@link #toByteArray()} and the
+ * string conversions copy it, prefer {@link #writeTo(WritableByteChannel)} and {@link #getInput()}.
+ */
+public final class SegmentedByteStream extends OutputStream implements ByteArray {
+
+    private static final int DEFAULT_CHUNK_SHIFT = 16;
+
+    private final int shift;
+    private final int chunkSize;
+    private final List<byte[]> chunks = new ArrayList<byte[]>();
+    private int size;
+
+    public SegmentedByteStream() {
+        this(1 << DEFAULT_CHUNK_SHIFT);
+    }
+
+    /**
+     * @param chunk Chunk size, rounded up to a power of two.
+     */
+    public SegmentedByteStream(int chunk) {
+        int c = Integer.highestOneBit(Math.max(0x100, chunk));
+        if (c < chunk) {
+            c <<= 1;
+        }
+        chunkSize = c;
+        shift = Integer.numberOfTrailingZeros(c);
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getChunkCount() {
+        return chunks.size();
+    }
+
+    public void reset() {
+        chunks.clear();
+        size = 0;
+    }
+
+    private byte[] current() {
+        int off = size & (chunkSize - 1);
+        int idx = size >>> shift;
+        if (off == 0 && idx == chunks.size()) {
+            chunks.add(new byte[chunkSize]);
+        }
+        return chunks.get(idx);
+    }
+
+    @Override
+    public void write(int b) {
+        current()[size & (chunkSize - 1)] = (byte) b;
+        size++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        while (len > 0) {
+            int pos = size & (chunkSize - 1);
+            int n = Math.min(len, chunkSize - pos);
+            System.arraycopy(b, off, current(), pos, n);
+            size += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    public void write(ByteArray a) {
+        ByteBuffer b = a.asByteBuffer();
+        while (b.hasRemaining()) {
+            int pos = size & (chunkSize - 1);
+            int n = Math.min(b.remaining(), chunkSize - pos);
+            b.get(current(), pos, n);
+            size += n;
+        }
+    }
+
+    /**
+     * Append the entire content (until EOF) of the stream.
+     * @param is Source.
+     * @return Number of bytes read.
+     */
+    public int appendFullyFrom(InputStream is) throws IOException {
+        int total = 0;
+        for (;;) {
+            int pos = size & (chunkSize - 1);
+            int r = is.read(current(), pos, chunkSize - pos);
+            if (r < 0) {
+                break;
+            }
+            size += r;
+            total += r;
+        }
+        return total;
+    }
+
+    @Override
+    public byte byteAt(int index) {
+        assert index >= 0 && index < size : index;
+        return chunks.get(index >>> shift)[index & (chunkSize - 1)];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Views of the filled parts of the chunks, in order.
+     */
+    public ByteBuffer[] asByteBuffers() {
+        int n = (size + chunkSize - 1) >>> shift;
+        ByteBuffer[] res = new ByteBuffer[n];
+        for (int i = 0; i < n; i++) {
+            int len = i == n - 1 ? size - (i << shift) : chunkSize;
+            res[i] = ByteBuffer.wrap(chunks.get(i), 0, len);
+        }
+        return res;
+    }
+
+    @Override
+    public InputStream getInput() {
+        return new InputStream() {
+            private int pos;
+
+            @Override
+            public int read() {
+                return pos < size ? byteAt(pos++) & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (len == 0) {
+                    return 0;
+                }
+                if (pos >= size) {
+                    return -1;
+                }
+                int start = pos & (chunkSize - 1);
+                int n = Math.min(Math.min(len, chunkSize - start), size - pos);
+                System.arraycopy(chunks.get(pos >>> shift), start, b, off, n);
+                pos += n;
+                return n;
+            }
+
+            @Override
+            public long skip(long n) {
+                int k = (int) Math.max(0, Math.min(n, size - pos));
+                pos += k;
+                return k;
+            }
+
+            @Override
+            public int available() {
+                return size - pos;
+            }
+        };
+    }
+
+    @Override
+    public void writeTo(OutputStream os) throws IOException {
+        int n = (size + chunkSize - 1) >>> shift;
+        for (int i = 0; i < n; i++) {
+            os.write(chunks.get(i), 0, i == n - 1 ? size - (i << shift) : chunkSize);
+        }
+    }
+
+    /**
+     * Write the content, in one gathering write per call if the channel supports it.
+     */
+    @Override
+    public void writeTo(WritableByteChannel ch) throws IOException {
+        ByteBuffer[] bs = asByteBuffers();
+        if (ch instanceof GatheringByteChannel) {
+            GatheringByteChannel g = (GatheringByteChannel) ch;
+            int first = 0;
+            while (first < bs.length) {
+                g.write(bs, first, bs.length - first);
+                while (first < bs.length && !bs[first].hasRemaining()) {
+                    first++;
+                }
+            }
+            return;
+        }
+        for (ByteBuffer b : bs) {
+            while (b.hasRemaining()) {
+                ch.write(b);
+            }
+        }
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        byte[] t = new byte[size];
+        int n = (size + chunkSize - 1) >>> shift;
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(chunks.get(i), 0, t, i << shift, i == n - 1 ? size - (i << shift) : chunkSize);
+        }
+        return t;
+    }
+
+    @Override
+    public byte[] toByteArrayUnsafe() {
+        if (size == chunkSize && chunks.size() == 1) {
+            return chunks.get(0);
+        }
+        return toByteArray();
+    }
+
+    @Override
+    public String toString(int offset, int length, String charset) {
+        assert offset >= 0 && offset + length <= size;
+        if ((offset >>> shift) == ((offset + length - 1) >>> shift) && length > 0) {
+            try {
+                return new String(chunks.get(offset >>> shift), offset & (chunkSize - 1), length, charset);
+            }
+            catch (UnsupportedEncodingException e) {
+                throw new WrappedException(e);
+            }
+        }
+        byte[] t = new byte[length];
+        InputStream is = getInput();
+        try {
+            is.skip(offset);
+            int done = 0;
+            while (done < length) {
+                done += is.read(t, done, length - done);
+            }
+        }
+        catch (IOException e) {
+            throw new WrappedException(e);
+        }
+        return FileUtils.bytesToString(t, charset);
+    }
+
+    @Override
+    public String toString(String charset) {
+        return toString(0, size, charset);
+    }
+
+    @Override
+    public String toStringRepresentation() {
+        return ByteArrays.toStringRepresentation(this, false);
+    }
+
+    @Override
+    public String toHexRepresentation(boolean pretty) {
+        return toHexRepresentation(pretty, true);
+    }
+
+    @Override
+    public String toHexRepresentation(boolean pretty, boolean full) {
+        return ByteArrays.toHexRepresentation(this, pretty, full);
+    }
+
+    @Override
+    public SegmentedByteStream clone() {
+        SegmentedByteStream s = new SegmentedByteStream(chunkSize);
+        for (byte[] c : chunks) {
+            s.chunks.add(c.clone());
+        }
+        s.size = size;
+        return s;
+    }
+
+    /**
+     * @return The content, contiguous: copied unless it fits in one chunk.
+     */
+    @Override
+    public ByteBuffer asByteBuffer() {
+        if (size <= chunkSize) {
+            return size == 0 ? ByteBuffer.allocate(0) : ByteBuffer.wrap(chunks.get(0), 0, size);
+        }
+        return ByteBuffer.wrap(toByteArray());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ByteArray && ByteArrays.equals(this, (ByteArray) o);
+    }
+
+    @Override
+    public int hashCode() {
+        return ByteArrays.hashCode(this);
+    }
+
+    @Override
+    public int compareTo(ByteArray o) {
+        return ByteArrays.compare(this, o);
+    }
+
+    @Override
+    public String toString() {
+        return "byte[" + size + "] in " + chunks.size() + " chunks";
+    }
+}
@@ -0,0 +1,48 @@
+package io.gaultier.modeling.util.base;
+
+/**
+ * Learns a buffer capacity from the sizes of recent payloads of one kind.
+ * Grows at once to fit a bigger payload, shrinks by half after many much smaller ones.
+ * Updates are racy, which only affects the quality of the estimate.
+ */
+public final class SizeHint {
+
+    private static final int MIN_CAPACITY = 0x100;
+    private static final int SHRINK_VOTES = 16;
+
+    private int capacity = MIN_CAPACITY;
+    private int smaller;
+
+    /**
+     * @return A power of two capacity fitting the recent payloads.
+     */
+    public int get() {
+        return capacity;
+    }
+
+    public void record(int size) {
+        int c = capacity;
+        if (size > c) {
+            int target = Integer.highestOneBit(size);
+            if (target < size) {
+                target <<= 1;
+            }
+            capacity = target > 0 ? target : Integer.MAX_VALUE;
+            smaller = 0;
+        }
+        else if (size < c / 2 && c > MIN_CAPACITY) {
+            if (++smaller >= SHRINK_VOTES) {
+                capacity = c / 2;
+                smaller = 0;
+            }
+        }
+        else {
+            smaller = 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SizeHint(" + capacity + ")";
+    }
+}